@@ -0,0 +1,60 @@
+package ua.com.juja.slack.command.handler.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.service.SlackCommandHandlerService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * createSlackParsedCommand with an in-memory user service, so only the library code is measured
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlackCommandHandlerServiceBenchmark {
+
+    @Param({"64", "512", "4096"})
+    private int textLength;
+
+    @Param({"1", "10", "100"})
+    private int mentionCount;
+
+    private SlackCommandHandlerService service;
+    private String text;
+    private List<String> corpus;
+    private int corpusIndex;
+
+    @Setup
+    public void setup() {
+        service = new SlackCommandHandlerService(SlackCommandTexts.inMemoryUserService());
+        text = SlackCommandTexts.generate(textLength, mentionCount, 0, 42);
+        corpus = SlackCommandTexts.corpus();
+    }
+
+    @Benchmark
+    public SlackParsedCommand createSlackParsedCommand() {
+        return service.createSlackParsedCommand(SlackCommandTexts.FROM_SLACK_ID, text);
+    }
+
+    @Benchmark
+    public SlackParsedCommand createSlackParsedCommandFromCorpus() {
+        String corpusText = corpus.get(corpusIndex);
+        corpusIndex = corpusIndex + 1 == corpus.size() ? 0 : corpusIndex + 1;
+        return service.createSlackParsedCommand(SlackCommandTexts.FROM_SLACK_ID, corpusText);
+    }
+}
@@ -0,0 +1,123 @@
+package ua.com.juja.slack.command.handler.benchmark;
+
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generated command texts and an in-memory user service for the benchmarks
+ */
+final class SlackCommandTexts {
+    static final String FROM_SLACK_ID = "UFROM0000";
+
+    private SlackCommandTexts() {
+    }
+
+    static String slackId(int index) {
+        return String.format("U%08d", index);
+    }
+
+    static String mention(int index) {
+        return "<@" + slackId(index) + "|user.name" + index + ">";
+    }
+
+    static List<String> tokens(int tokenCount) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < tokenCount; i++) {
+            result.add("-token" + i);
+        }
+        return result;
+    }
+
+    /**
+     * Text of about textLength chars: every token is followed by a mention, the rest of the mentions
+     * and plain words are spread over the text
+     */
+    static String generate(int textLength, int mentionCount, int tokenCount, long seed) {
+        if (mentionCount < tokenCount) {
+            throw new IllegalArgumentException("Every token needs a mention");
+        }
+        Random random = new Random(seed);
+        StringBuilder result = new StringBuilder(textLength + 64);
+        List<String> tokens = tokens(tokenCount);
+        int mentionIndex = 0;
+        for (String token : tokens) {
+            result.append(token).append(' ').append(mention(mentionIndex++)).append(' ');
+        }
+        int restMentions = mentionCount - mentionIndex;
+        int wordsBetween = Math.max(1, (textLength - result.length()) / 8 / (restMentions + 1));
+        while (mentionIndex < mentionCount || result.length() < textLength) {
+            for (int i = 0; i < wordsBetween && result.length() < textLength; i++) {
+                result.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            if (mentionIndex < mentionCount) {
+                result.append(mention(mentionIndex++)).append(' ');
+            }
+        }
+        return result.toString().trim();
+    }
+
+    /**
+     * Texts from slack-commands.txt with {U} replaced by mentions of different users
+     */
+    static List<String> corpus() {
+        List<String> result = new ArrayList<>();
+        InputStream stream = SlackCommandTexts.class.getClassLoader().getResourceAsStream("slack-commands.txt");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            int userIndex = 0;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                StringBuilder text = new StringBuilder();
+                int from = 0;
+                int placeholder;
+                while ((placeholder = line.indexOf("{U}", from)) >= 0) {
+                    text.append(line, from, placeholder).append(mention(userIndex++ % 50));
+                    from = placeholder + 3;
+                }
+                result.add(text.append(line.substring(from)).toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    static List<UserDTO> users(int count) {
+        List<UserDTO> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new UserDTO("uuid-" + i, slackId(i)));
+        }
+        return result;
+    }
+
+    /**
+     * Answers every slackId without any latency
+     */
+    static UserBySlackUserId inMemoryUserService() {
+        return slackIds -> {
+            Set<String> unique = new LinkedHashSet<>(slackIds);
+            List<UserDTO> result = new ArrayList<>(unique.size());
+            for (String slackId : unique) {
+                result.add(new UserDTO("uuid-" + slackId, slackId));
+            }
+            return result;
+        };
+    }
+
+    private static final String[] WORDS = {"thanks", "for", "the", "review", "help", "code", "team",
+            "today", "points", "project", "deadline", "great", "job", "with", "gradle", "tests"};
+}
@@ -0,0 +1,92 @@
+package ua.com.juja.slack.command.handler.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+import ua.com.juja.slack.command.handler.parser.SlackMentionIndex;
+import ua.com.juja.slack.command.handler.parser.SlackMentionScanner;
+import ua.com.juja.slack.command.handler.parser.SlackTokenMatcher;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Getters of SlackParsedCommand memoize their result, so every invocation measures the first call
+ * on a new command created with an already scanned mention index (as the service creates it)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SlackParsedCommandBenchmark {
+
+    @Param({"64", "512", "4096"})
+    private int textLength;
+
+    @Param({"2", "20"})
+    private int mentionCount;
+
+    @Param({"1", "2"})
+    private int tokenCount;
+
+    private UserDTO fromUser;
+    private String text;
+    private List<UserDTO> usersInText;
+    private SlackMentionIndex mentionIndex;
+    private Set<String> tokens;
+    private SlackTokenMatcher compiledTokens;
+
+    @Setup
+    public void setup() {
+        fromUser = new UserDTO("uuid-from", SlackCommandTexts.FROM_SLACK_ID);
+        text = SlackCommandTexts.generate(textLength, mentionCount, tokenCount, 42);
+        usersInText = SlackCommandTexts.users(mentionCount);
+        mentionIndex = SlackMentionScanner.scan(text);
+        tokens = new HashSet<>(SlackCommandTexts.tokens(tokenCount));
+        compiledTokens = SlackTokenMatcher.compile(tokens);
+    }
+
+    @Benchmark
+    public SlackMentionIndex scanMentions() {
+        return SlackMentionScanner.scan(text);
+    }
+
+    @Benchmark
+    public String getTextWithoutSlackNames() {
+        return newCommand().getTextWithoutSlackNames();
+    }
+
+    @Benchmark
+    public Map<String, UserDTO> getUsersWithTokens() {
+        return newCommand().getUsersWithTokens(tokens);
+    }
+
+    @Benchmark
+    public Map<String, UserDTO> getUsersWithCompiledTokens() {
+        return newCommand().getUsersWithTokens(compiledTokens);
+    }
+
+    @Benchmark
+    public UserDTO getFirstUserFromText() {
+        return newCommand().getFirstUserFromText();
+    }
+
+    private SlackParsedCommand newCommand() {
+        return new SlackParsedCommand(fromUser, text, usersInText, mentionIndex);
+    }
+}
@@ -0,0 +1,22 @@
+package ua.com.juja.slack.command.handler;
+
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Non blocking counterpart of {@link UserBySlackUserId}
+ */
+public interface AsyncUserBySlackUserId {
+    CompletableFuture<List<UserDTO>> findUsersBySlackUserIdAsync(List<String> slackNames);
+
+    /**
+     * Runs the blocking userBySlackUserId on the executor
+     */
+    static AsyncUserBySlackUserId fromBlocking(UserBySlackUserId userBySlackUserId, Executor executor) {
+        return slackNames -> CompletableFuture.supplyAsync(
+                () -> userBySlackUserId.findUsersBySlackUserId(slackNames), executor);
+    }
+}
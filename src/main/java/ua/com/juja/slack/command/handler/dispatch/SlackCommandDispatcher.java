@@ -0,0 +1,163 @@
+package ua.com.juja.slack.command.handler.dispatch;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import ua.com.juja.slack.command.handler.exception.SlackCommandDispatchException;
+import ua.com.juja.slack.command.handler.exception.SlackCommandErrorCode;
+import ua.com.juja.slack.command.handler.schema.SlackCommandSchema;
+import ua.com.juja.slack.command.handler.service.SlackCommandHandlerService;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Routes slash commands by name to the registered handlers.
+ * <p>
+ * Every command is registered with its {@link SlackCommandSchema}, compiled once: the text is validated before
+ * the user service is called and the handler receives the users bound to the tokens. The whole command, including
+ * the blocking user service call, runs on the executor of the command, and at most maxConcurrentCommands of the same
+ * command are in flight, the others are rejected at once. So a slow command or a slow user service can't take the
+ * threads of the dispatch callers or of the other commands.
+ *
+ * @param <R> response of the handlers
+ */
+@Slf4j
+public class SlackCommandDispatcher<R> {
+
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    @EqualsAndHashCode
+    public static final class CommandStats {
+        /** completed commands, including failed ones but not the rejected */
+        private final long dispatchedCount;
+        private final long failedCount;
+        private final long rejectedCount;
+        /** sum of the latencies of the completed commands, from dispatch to the handler result */
+        private final long totalNanos;
+        private final long maxNanos;
+    }
+
+    private final SlackCommandHandlerService slackCommandHandlerService;
+    private final Map<String, Registration<R>> registrations = new ConcurrentHashMap<>();
+
+    public SlackCommandDispatcher(SlackCommandHandlerService slackCommandHandlerService) {
+        this.slackCommandHandlerService = slackCommandHandlerService;
+    }
+
+    /**
+     * @param commandName           as Slack sends it, e.g. "/kudos"
+     * @param executor              the handler runs on
+     * @param maxConcurrentCommands commands with the name which can be in flight at once
+     */
+    public void register(String commandName, SlackCommandSchema schema, SlackCommandHandler<R> handler,
+                         Executor executor, int maxConcurrentCommands) {
+        if (maxConcurrentCommands < 1) {
+            throw new IllegalArgumentException(String.format("Wrong maxConcurrentCommands [%d] of the command '%s'",
+                    maxConcurrentCommands, commandName));
+        }
+        Registration<R> registration = new Registration<>(schema, handler, executor, maxConcurrentCommands);
+        if (registrations.putIfAbsent(commandName, registration) != null) {
+            throw new IllegalArgumentException(String.format("Command '%s' is already registered", commandName));
+        }
+        log.info("Registered command '{}' with tokens {}", commandName, schema.getRules());
+    }
+
+    public Set<String> getCommandNames() {
+        return Collections.unmodifiableSet(registrations.keySet());
+    }
+
+    /**
+     * The text is copied on the caller thread, so the caller can reuse its buffer as soon as the call returns
+     *
+     * @return the handler result, or the future failed with {@link SlackCommandDispatchException}
+     * if the command isn't registered or too many of them are in flight
+     */
+    public CompletableFuture<R> dispatch(String commandName, String fromUserSlackUserId, CharSequence text) {
+        Registration<R> registration = registrations.get(commandName);
+        if (registration == null) {
+            return failed(new SlackCommandDispatchException(SlackCommandErrorCode.UNKNOWN_COMMAND, commandName));
+        }
+        if (!registration.permits.tryAcquire()) {
+            registration.rejectedCount.increment();
+            return failed(new SlackCommandDispatchException(SlackCommandErrorCode.TOO_MANY_COMMANDS, commandName,
+                    registration.maxConcurrentCommands));
+        }
+        long started = System.nanoTime();
+        String commandText = text == null ? null : text.toString();
+        CompletableFuture<R> handled;
+        try {
+            handled = CompletableFuture.supplyAsync(() -> slackCommandHandlerService.handleAsync(fromUserSlackUserId,
+                    commandText, registration.schema, registration.handler::handle, registration.executor),
+                    registration.executor).thenCompose(Function.identity());
+        } catch (RuntimeException e) {
+            handled = failed(e);
+        }
+        // the caller sees the completion only after the permit is back and the command is counted
+        return handled.whenComplete((response, error) -> {
+            registration.permits.release();
+            registration.record(System.nanoTime() - started, error != null);
+        });
+    }
+
+    /**
+     * @return counters of the command or null if it isn't registered
+     */
+    public CommandStats getStats(String commandName) {
+        Registration<R> registration = registrations.get(commandName);
+        return registration == null ? null : registration.getStats();
+    }
+
+    private static <T> CompletableFuture<T> failed(RuntimeException error) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(error);
+        return result;
+    }
+
+    private static final class Registration<R> {
+        private final SlackCommandSchema schema;
+        private final SlackCommandHandler<R> handler;
+        private final Executor executor;
+        private final int maxConcurrentCommands;
+        private final Semaphore permits;
+        private final LongAdder dispatchedCount = new LongAdder();
+        private final LongAdder failedCount = new LongAdder();
+        private final LongAdder rejectedCount = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Registration(SlackCommandSchema schema, SlackCommandHandler<R> handler, Executor executor,
+                             int maxConcurrentCommands) {
+            this.schema = schema;
+            this.handler = handler;
+            this.executor = executor;
+            this.maxConcurrentCommands = maxConcurrentCommands;
+            this.permits = new Semaphore(maxConcurrentCommands);
+        }
+
+        private void record(long nanos, boolean failed) {
+            dispatchedCount.increment();
+            if (failed) {
+                failedCount.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private CommandStats getStats() {
+            return new CommandStats(dispatchedCount.sum(), failedCount.sum(), rejectedCount.sum(), totalNanos.sum(),
+                    maxNanos.get());
+        }
+    }
+}
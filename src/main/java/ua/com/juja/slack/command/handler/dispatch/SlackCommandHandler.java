@@ -0,0 +1,17 @@
+package ua.com.juja.slack.command.handler.dispatch;
+
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.schema.SlackCommandArguments;
+
+/**
+ * Handler of one slash command registered in {@link SlackCommandDispatcher}
+ *
+ * @param <R> response to the command
+ */
+@FunctionalInterface
+public interface SlackCommandHandler<R> {
+    /**
+     * @param arguments users bound to the tokens of the schema the handler is registered with
+     */
+    R handle(SlackParsedCommand command, SlackCommandArguments arguments);
+}
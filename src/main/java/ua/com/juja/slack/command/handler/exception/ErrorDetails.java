@@ -0,0 +1,56 @@
+package ua.com.juja.slack.command.handler.exception;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Error code and message arguments of the coded exceptions, the message is rendered only when it is asked for.
+ * Mutable arguments (a text buffer, a list of received users) are copied, so the message shows what failed.
+ */
+final class ErrorDetails {
+    private final SlackCommandErrorCode errorCode;
+    private final Object[] arguments;
+    private volatile String message;
+
+    ErrorDetails(SlackCommandErrorCode errorCode, Object[] arguments) {
+        this.errorCode = errorCode;
+        this.arguments = snapshot(arguments);
+    }
+
+    ErrorDetails(SlackCommandErrorCode errorCode, String message) {
+        this.errorCode = errorCode;
+        this.arguments = new Object[]{message};
+        this.message = message;
+    }
+
+    SlackCommandErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    Object[] getArguments() {
+        return arguments.clone();
+    }
+
+    String getMessage() {
+        String result = message;
+        if (result == null) {
+            result = errorCode.formatMessage(arguments);
+            message = result;
+        }
+        return result;
+    }
+
+    private static Object[] snapshot(Object[] arguments) {
+        Object[] result = arguments.clone();
+        for (int i = 0; i < result.length; i++) {
+            Object argument = result[i];
+            if (argument instanceof CharSequence && !(argument instanceof String)) {
+                result[i] = argument.toString();
+            } else if (argument instanceof Collection) {
+                result[i] = Collections.unmodifiableList(new ArrayList<>((Collection<?>) argument));
+            }
+        }
+        return result;
+    }
+}
@@ -4,7 +4,40 @@ package ua.com.juja.slack.command.handler.exception;
  * @author Nikolay Horushko
  */
 public class ParseSlackCommandException extends RuntimeException {
+    private final ErrorDetails details;
+
     public ParseSlackCommandException(String message) {
         super(message);
+        this.details = new ErrorDetails(SlackCommandErrorCode.OTHER, message);
+        super.fillInStackTrace();
+    }
+
+    /**
+     * Cheap to throw for malformed commands: the stack trace isn't filled
+     * and the message is rendered only when it is asked for.
+     */
+    public ParseSlackCommandException(SlackCommandErrorCode errorCode, Object... arguments) {
+        this.details = new ErrorDetails(errorCode, arguments);
+    }
+
+    public SlackCommandErrorCode getErrorCode() {
+        return details.getErrorCode();
+    }
+
+    public Object[] getArguments() {
+        return details.getArguments();
+    }
+
+    @Override
+    public String getMessage() {
+        return details.getMessage();
+    }
+
+    /**
+     * Only the message constructor fills the stack trace, explicitly
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
     }
-}
\ No newline at end of file
+}
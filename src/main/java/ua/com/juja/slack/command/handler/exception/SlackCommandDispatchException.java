@@ -0,0 +1,31 @@
+package ua.com.juja.slack.command.handler.exception;
+
+/**
+ * The command isn't handled by the dispatcher: it isn't registered or too many of them are in flight.
+ * The stack trace isn't filled and the message is rendered only when it is asked for.
+ */
+public class SlackCommandDispatchException extends RuntimeException {
+    private final ErrorDetails details;
+
+    public SlackCommandDispatchException(SlackCommandErrorCode errorCode, Object... arguments) {
+        this.details = new ErrorDetails(errorCode, arguments);
+    }
+
+    public SlackCommandErrorCode getErrorCode() {
+        return details.getErrorCode();
+    }
+
+    public Object[] getArguments() {
+        return details.getArguments();
+    }
+
+    @Override
+    public String getMessage() {
+        return details.getMessage();
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
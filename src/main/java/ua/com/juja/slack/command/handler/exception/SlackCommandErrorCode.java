@@ -0,0 +1,39 @@
+package ua.com.juja.slack.command.handler.exception;
+
+/**
+ * Reason of a failed command, the message is rendered from the format and the arguments of the exception
+ */
+public enum SlackCommandErrorCode {
+    /** arguments: text */
+    NO_SLACK_NAMES("The text '%s' doesn't contain any slack names"),
+    /** arguments: token, text */
+    TOKEN_NOT_FOUND("Token '%s' didn't find in the string '%s'"),
+    /** arguments: text, count of the tokens, token */
+    DUPLICATED_TOKEN("The text '%s' contains %d tokens '%s', but expected 1"),
+    /** arguments: text, token */
+    NO_SLACK_NAME_FOR_TOKEN("The text '%s' doesn't contain slackName for token '%s'"),
+    /** arguments: text, count of the slack names, token, expected count */
+    WRONG_SLACK_NAME_COUNT("The text '%s' contains %d slackNames for token '%s', but expected %d"),
+    /** arguments: count of the sent slackIds, count of the received users, received users */
+    UNEXPECTED_USER_COUNT("Error. Sent [%d] slackUsersId to UserService, but received [%d] users [%s]"),
+    /** arguments: slackId, received users */
+    USER_NOT_FOUND("Error. User for slackUserId: [%s] didn't find in the List of Users: %s"),
+    /** arguments: slackId */
+    USER_NOT_IN_RESPONSE("Error. User for slackUserId: [%s] didn't find in the user service response"),
+    /** arguments: command name */
+    UNKNOWN_COMMAND("Command '%s' isn't registered"),
+    /** arguments: command name, limit of the commands in flight */
+    TOO_MANY_COMMANDS("Command '%s' is rejected, %d commands are already in flight"),
+    /** arguments: message */
+    OTHER("%s");
+
+    private final String messageFormat;
+
+    SlackCommandErrorCode(String messageFormat) {
+        this.messageFormat = messageFormat;
+    }
+
+    public String formatMessage(Object... arguments) {
+        return String.format(messageFormat, arguments);
+    }
+}
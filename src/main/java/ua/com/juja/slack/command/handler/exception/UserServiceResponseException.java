@@ -0,0 +1,31 @@
+package ua.com.juja.slack.command.handler.exception;
+
+/**
+ * The user service didn't return users for all the sent slackIds. The stack trace isn't filled
+ * and the message (with the received users) is rendered only when it is asked for.
+ */
+public class UserServiceResponseException extends IllegalArgumentException {
+    private final ErrorDetails details;
+
+    public UserServiceResponseException(SlackCommandErrorCode errorCode, Object... arguments) {
+        this.details = new ErrorDetails(errorCode, arguments);
+    }
+
+    public SlackCommandErrorCode getErrorCode() {
+        return details.getErrorCode();
+    }
+
+    public Object[] getArguments() {
+        return details.getArguments();
+    }
+
+    @Override
+    public String getMessage() {
+        return details.getMessage();
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
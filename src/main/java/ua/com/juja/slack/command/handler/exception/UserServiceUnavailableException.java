@@ -0,0 +1,14 @@
+package ua.com.juja.slack.command.handler.exception;
+
+/**
+ * The user service didn't answer: the call failed, timed out or was rejected without calling it
+ */
+public class UserServiceUnavailableException extends RuntimeException {
+    public UserServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public UserServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
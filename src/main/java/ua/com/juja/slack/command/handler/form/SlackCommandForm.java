@@ -0,0 +1,30 @@
+package ua.com.juja.slack.command.handler.form;
+
+import lombok.Getter;
+import lombok.ToString;
+import ua.com.juja.slack.command.handler.parser.SlackMentionIndex;
+
+/**
+ * Fields of a slash command request which the library needs, decoded by {@link SlackFormDecoder}.
+ * Fields which aren't in the request are null, the text is already scanned for slack names.
+ */
+@Getter
+@ToString(exclude = "mentionIndex")
+public final class SlackCommandForm {
+    private final String userId;
+    private final String teamId;
+    private final String command;
+    private final String responseUrl;
+    private final CharSequence text;
+    private final SlackMentionIndex mentionIndex;
+
+    SlackCommandForm(String userId, String teamId, String command, String responseUrl, CharSequence text,
+                     SlackMentionIndex mentionIndex) {
+        this.userId = userId;
+        this.teamId = teamId;
+        this.command = command;
+        this.responseUrl = responseUrl;
+        this.text = text;
+        this.mentionIndex = mentionIndex;
+    }
+}
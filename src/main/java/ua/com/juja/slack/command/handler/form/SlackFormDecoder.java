@@ -0,0 +1,171 @@
+package ua.com.juja.slack.command.handler.form;
+
+import ua.com.juja.slack.command.handler.parser.SlackMentionIndex;
+import ua.com.juja.slack.command.handler.parser.SlackMentionScanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single pass decoder of the application/x-www-form-urlencoded body of a slash command.
+ * <p>
+ * Only user_id, team_id, command, response_url and text are URL-decoded (as UTF-8), the other fields
+ * are skipped without decoding. The text is scanned for slack names while it is decoded. If a field
+ * is repeated, the last one wins. Malformed UTF-8 is replaced with U+FFFD.
+ */
+public final class SlackFormDecoder {
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private static final byte[] USER_ID = ascii("user_id");
+    private static final byte[] TEAM_ID = ascii("team_id");
+    private static final byte[] COMMAND = ascii("command");
+    private static final byte[] RESPONSE_URL = ascii("response_url");
+    private static final byte[] TEXT = ascii("text");
+
+    private SlackFormDecoder() {
+    }
+
+    public static SlackCommandForm decode(byte[] body) {
+        return decode(ByteBuffer.wrap(body));
+    }
+
+    /**
+     * Decodes the bytes between position and limit of the body, the position isn't changed
+     *
+     * @throws IllegalArgumentException if a percent escape is malformed
+     */
+    public static SlackCommandForm decode(ByteBuffer body) {
+        String userId = null;
+        String teamId = null;
+        String command = null;
+        String responseUrl = null;
+        CharSequence text = null;
+        SlackMentionIndex mentionIndex = null;
+
+        int limit = body.limit();
+        int position = body.position();
+        while (position < limit) {
+            int keyEnd = position;
+            while (keyEnd < limit && body.get(keyEnd) != '=' && body.get(keyEnd) != '&') {
+                keyEnd++;
+            }
+            int valueStart = keyEnd < limit && body.get(keyEnd) == '=' ? keyEnd + 1 : keyEnd;
+            int valueEnd = valueStart;
+            while (valueEnd < limit && body.get(valueEnd) != '&') {
+                valueEnd++;
+            }
+            if (keyEquals(body, position, keyEnd, TEXT)) {
+                StringBuilder decoded = new StringBuilder(valueEnd - valueStart);
+                SlackMentionScanner scanner = new SlackMentionScanner(decoded);
+                decode(body, valueStart, valueEnd, decoded, scanner);
+                text = decoded;
+                mentionIndex = scanner.toIndex();
+            } else if (keyEquals(body, position, keyEnd, USER_ID)) {
+                userId = decodeString(body, valueStart, valueEnd);
+            } else if (keyEquals(body, position, keyEnd, TEAM_ID)) {
+                teamId = decodeString(body, valueStart, valueEnd);
+            } else if (keyEquals(body, position, keyEnd, COMMAND)) {
+                command = decodeString(body, valueStart, valueEnd);
+            } else if (keyEquals(body, position, keyEnd, RESPONSE_URL)) {
+                responseUrl = decodeString(body, valueStart, valueEnd);
+            }
+            position = valueEnd + 1;
+        }
+        return new SlackCommandForm(userId, teamId, command, responseUrl, text, mentionIndex);
+    }
+
+    private static String decodeString(ByteBuffer body, int from, int to) {
+        StringBuilder result = new StringBuilder(to - from);
+        decode(body, from, to, result, null);
+        return result.toString();
+    }
+
+    /**
+     * URL-decodes [from, to) of the body into out, the scanner (if any) is advanced after every char
+     */
+    private static void decode(ByteBuffer body, int from, int to, StringBuilder out, SlackMentionScanner scanner) {
+        int codePoint = 0;
+        int pending = 0;
+        int minCodePoint = 0;
+        for (int i = from; i < to; i++) {
+            int value = body.get(i) & 0xFF;
+            if (value == '+') {
+                value = ' ';
+            } else if (value == '%') {
+                if (i + 2 >= to) {
+                    throw new IllegalArgumentException(String.format("Incomplete percent escape at [%d]", i));
+                }
+                int high = Character.digit(body.get(i + 1), 16);
+                int low = Character.digit(body.get(i + 2), 16);
+                if (high < 0 || low < 0) {
+                    throw new IllegalArgumentException(String.format("Wrong percent escape at [%d]", i));
+                }
+                value = high << 4 | low;
+                i += 2;
+            }
+            if (pending > 0) {
+                if ((value & 0xC0) == 0x80) {
+                    codePoint = codePoint << 6 | value & 0x3F;
+                    if (--pending == 0) {
+                        if (codePoint < minCodePoint || codePoint > Character.MAX_CODE_POINT
+                                || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+                            out.append(REPLACEMENT);
+                        } else {
+                            out.appendCodePoint(codePoint);
+                        }
+                        advance(scanner, out);
+                    }
+                    continue;
+                }
+                pending = 0;
+                out.append(REPLACEMENT);
+                advance(scanner, out);
+            }
+            if (value < 0x80) {
+                out.append((char) value);
+                advance(scanner, out);
+            } else if ((value & 0xE0) == 0xC0) {
+                codePoint = value & 0x1F;
+                pending = 1;
+                minCodePoint = 0x80;
+            } else if ((value & 0xF0) == 0xE0) {
+                codePoint = value & 0x0F;
+                pending = 2;
+                minCodePoint = 0x800;
+            } else if ((value & 0xF8) == 0xF0) {
+                codePoint = value & 0x07;
+                pending = 3;
+                minCodePoint = 0x10000;
+            } else {
+                out.append(REPLACEMENT);
+                advance(scanner, out);
+            }
+        }
+        if (pending > 0) {
+            out.append(REPLACEMENT);
+            advance(scanner, out);
+        }
+    }
+
+    private static void advance(SlackMentionScanner scanner, StringBuilder out) {
+        if (scanner != null) {
+            scanner.advanceTo(out.length());
+        }
+    }
+
+    private static boolean keyEquals(ByteBuffer body, int from, int to, byte[] key) {
+        if (to - from != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (body.get(from + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
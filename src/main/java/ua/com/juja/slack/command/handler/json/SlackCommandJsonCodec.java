@@ -0,0 +1,229 @@
+package ua.com.juja.slack.command.handler.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+import ua.com.juja.slack.command.handler.parser.SlackMention;
+import ua.com.juja.slack.command.handler.parser.SlackMentionIndex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming serialization of {@link SlackParsedCommand} and {@link UserDTO} with jackson-core, without databind
+ * and reflection. Any JsonFactory can be used, e.g. SmileFactory or CBORFactory for a compact binary encoding.
+ * <p>
+ * The command is written as
+ * {@code {"fromUser":{"uuid":..,"slackId":..},"text":..,"usersInText":[..],"mentions":[[start,end,slackId,slackName],..]}},
+ * the mentions are read back into the mention index, so the receiver doesn't scan the text again.
+ * Unknown fields are skipped when reading. Thread safe if the factory is.
+ */
+public final class SlackCommandJsonCodec {
+    private static final String FROM_USER = "fromUser";
+    private static final String TEXT = "text";
+    private static final String USERS_IN_TEXT = "usersInText";
+    private static final String MENTIONS = "mentions";
+    private static final String UUID = "uuid";
+    private static final String SLACK_ID = "slackId";
+
+    private final JsonFactory factory;
+
+    public SlackCommandJsonCodec() {
+        this(new JsonFactory());
+    }
+
+    public SlackCommandJsonCodec(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    public byte[] writeCommand(SlackParsedCommand command) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        writeCommand(command, out);
+        return out.toByteArray();
+    }
+
+    public void writeCommand(SlackParsedCommand command, OutputStream out) throws IOException {
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            writeCommand(generator, command);
+        }
+    }
+
+    public SlackParsedCommand readCommand(byte[] in) throws IOException {
+        try (JsonParser parser = factory.createParser(in)) {
+            parser.nextToken();
+            return readCommand(parser);
+        }
+    }
+
+    public SlackParsedCommand readCommand(InputStream in) throws IOException {
+        try (JsonParser parser = factory.createParser(in)) {
+            parser.nextToken();
+            return readCommand(parser);
+        }
+    }
+
+    public static void writeCommand(JsonGenerator generator, SlackParsedCommand command) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(FROM_USER);
+        writeUser(generator, command.getFromUser());
+        generator.writeStringField(TEXT, command.getText());
+        generator.writeArrayFieldStart(USERS_IN_TEXT);
+        for (UserDTO user : command.getAllUsersInText()) {
+            writeUser(generator, user);
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart(MENTIONS);
+        for (SlackMention mention : command.getMentionIndex().getMentions()) {
+            generator.writeStartArray();
+            generator.writeNumber(mention.getStart());
+            generator.writeNumber(mention.getEnd());
+            generator.writeString(mention.getSlackId());
+            generator.writeString(mention.getSlackName());
+            generator.writeEndArray();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    /**
+     * @param parser positioned at the START_OBJECT of the command, is left at its END_OBJECT
+     */
+    public static SlackParsedCommand readCommand(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+        UserDTO fromUser = null;
+        String text = null;
+        List<UserDTO> usersInText = new ArrayList<>();
+        SlackMentionIndex mentionIndex = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case FROM_USER:
+                    fromUser = readUser(parser);
+                    break;
+                case TEXT:
+                    text = parser.getValueAsString();
+                    break;
+                case USERS_IN_TEXT:
+                    expect(parser, JsonToken.START_ARRAY);
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        usersInText.add(readUser(parser));
+                    }
+                    break;
+                case MENTIONS:
+                    mentionIndex = readMentions(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (text == null) {
+            throw new JsonParseException(parser, "SlackParsedCommand without text");
+        }
+        if (mentionIndex != null && !mentionIndex.isEmpty()
+                && mentionIndex.getMentions().get(mentionIndex.size() - 1).getEnd() > text.length()) {
+            throw new JsonParseException(parser, "Mentions are out of the text");
+        }
+        if (mentionIndex != null) {
+            for (SlackMention mention : mentionIndex.getMentions()) {
+                if (!isMentionOf(text, mention)) {
+                    throw new JsonParseException(parser, String.format("Mention %s doesn't match the text", mention));
+                }
+            }
+        }
+        return new SlackParsedCommand(fromUser, text, usersInText, mentionIndex);
+    }
+
+    public static void writeUser(JsonGenerator generator, UserDTO user) throws IOException {
+        if (user == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringField(UUID, user.getUuid());
+        generator.writeStringField(SLACK_ID, user.getSlackId());
+        generator.writeEndObject();
+    }
+
+    /**
+     * @param parser positioned at the START_OBJECT (or VALUE_NULL) of the user, is left at its last token
+     */
+    public static UserDTO readUser(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(parser, JsonToken.START_OBJECT);
+        String uuid = null;
+        String slackId = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (UUID.equals(field)) {
+                uuid = parser.getValueAsString();
+            } else if (SLACK_ID.equals(field)) {
+                slackId = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new UserDTO(uuid, slackId);
+    }
+
+    private static SlackMentionIndex readMentions(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<SlackMention> mentions = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser, JsonToken.START_ARRAY);
+            parser.nextToken();
+            int start = parser.getIntValue();
+            parser.nextToken();
+            int end = parser.getIntValue();
+            parser.nextToken();
+            String slackId = parser.getValueAsString();
+            parser.nextToken();
+            String slackName = parser.getValueAsString();
+            if (parser.nextToken() != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Mention has to be [start, end, slackId, slackName]");
+            }
+            mentions.add(new SlackMention(start, end, slackId, slackName));
+        }
+        try {
+            return SlackMentionIndex.of(mentions);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(parser, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The range of the mention is <@slackId|slackName> in the text
+     */
+    private static boolean isMentionOf(String text, SlackMention mention) {
+        String slackId = mention.getSlackId();
+        String slackName = mention.getSlackName();
+        int start = mention.getStart();
+        if (slackId == null || slackName == null || start < 0) {
+            return false;
+        }
+        int separator = start + 2 + slackId.length();
+        return mention.getEnd() - start == slackId.length() + slackName.length() + 4
+                && text.startsWith("<@", start) && text.regionMatches(start + 2, slackId, 0, slackId.length())
+                && text.charAt(separator) == '|'
+                && text.regionMatches(separator + 1, slackName, 0, slackName.length())
+                && text.charAt(mention.getEnd() - 1) == '>';
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws IOException {
+        if (parser.getCurrentToken() != token) {
+            throw new JsonParseException(parser, String.format("Expected %s, but was %s", token,
+                    parser.getCurrentToken()));
+        }
+    }
+}
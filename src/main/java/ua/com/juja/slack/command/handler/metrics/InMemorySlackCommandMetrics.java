@@ -0,0 +1,90 @@
+package ua.com.juja.slack.command.handler.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free counters and power of two histograms kept in memory, for applications without
+ * a metrics library and for tests. Histogram bucket i counts values in [2^(i-1), 2^i), bucket 0 counts zeros.
+ */
+public class InMemorySlackCommandMetrics implements SlackCommandMetrics {
+    private static final int BUCKETS = 64;
+
+    private final Map<Phase, AtomicLongArray> phaseHistograms = new EnumMap<>(Phase.class);
+    private final AtomicLongArray mentionCountHistogram = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray userServiceBatchHistogram = new AtomicLongArray(BUCKETS);
+    private final ConcurrentHashMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    public InMemorySlackCommandMetrics() {
+        for (Phase phase : Phase.values()) {
+            phaseHistograms.put(phase, new AtomicLongArray(BUCKETS));
+        }
+    }
+
+    @Override
+    public void recordPhase(Phase phase, long nanos) {
+        phaseHistograms.get(phase).incrementAndGet(bucket(nanos));
+    }
+
+    @Override
+    public void recordMentionCount(int mentionCount) {
+        mentionCountHistogram.incrementAndGet(bucket(mentionCount));
+    }
+
+    @Override
+    public void recordUserServiceBatch(int slackIdCount) {
+        userServiceBatchHistogram.incrementAndGet(bucket(slackIdCount));
+    }
+
+    @Override
+    public void recordFailure(String reason) {
+        failures.computeIfAbsent(reason, key -> new LongAdder()).increment();
+    }
+
+    public long[] getPhaseHistogram(Phase phase) {
+        return toArray(phaseHistograms.get(phase));
+    }
+
+    public long getPhaseCount(Phase phase) {
+        return sum(phaseHistograms.get(phase));
+    }
+
+    public long[] getMentionCountHistogram() {
+        return toArray(mentionCountHistogram);
+    }
+
+    public long[] getUserServiceBatchHistogram() {
+        return toArray(userServiceBatchHistogram);
+    }
+
+    public Map<String, Long> getFailureCounts() {
+        Map<String, Long> result = new HashMap<>();
+        failures.forEach((reason, count) -> result.put(reason, count.sum()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    static int bucket(long value) {
+        return value <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long[] toArray(AtomicLongArray histogram) {
+        long[] result = new long[histogram.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = histogram.get(i);
+        }
+        return result;
+    }
+
+    private static long sum(AtomicLongArray histogram) {
+        long result = 0;
+        for (int i = 0; i < histogram.length(); i++) {
+            result += histogram.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+package ua.com.juja.slack.command.handler.metrics;
+
+/**
+ * Instrumentation of the command handling pipeline. Implement it on top of any metrics library
+ * (Micrometer, Dropwizard Metrics...), every method does nothing by default.
+ * <p>
+ * Methods are called on the handler threads, implementations have to be thread safe and cheap.
+ * With {@link #NONE} the pipeline doesn't even read the clock.
+ */
+public interface SlackCommandMetrics {
+    SlackCommandMetrics NONE = new SlackCommandMetrics() {
+    };
+
+    enum Phase {
+        /** scanning the text for slack names and checking it against a schema */
+        PARSE,
+        /** waiting for the user service */
+        USER_SERVICE,
+        CHECK_RECEIVED_USERS,
+        /** ordering users by the text and separating the from user */
+        SORT,
+        /** the whole createSlackParsedCommand */
+        TOTAL
+    }
+
+    default void recordPhase(Phase phase, long nanos) {
+    }
+
+    default void recordMentionCount(int mentionCount) {
+    }
+
+    /**
+     * @param slackIdCount distinct slackIds sent to the user service in one call
+     */
+    default void recordUserServiceBatch(int slackIdCount) {
+    }
+
+    /**
+     * @param reason short stable name of the failure, suitable as a metric tag
+     */
+    default void recordFailure(String reason) {
+    }
+}
@@ -0,0 +1,18 @@
+package ua.com.juja.slack.command.handler.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Not parsed slash command: the slackId of the user who sent it and the text
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@EqualsAndHashCode
+public final class SlackCommandRequest {
+    private final String fromUserSlackUserId;
+    private final String text;
+}
@@ -0,0 +1,39 @@
+package ua.com.juja.slack.command.handler.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Result of handling one request of a batch: either the parsed command or the error
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class SlackCommandResult {
+    /** position of the request in the input, starting from 0 */
+    private final long index;
+    private final SlackCommandRequest request;
+    private final SlackParsedCommand command;
+    private final RuntimeException error;
+
+    private SlackCommandResult(long index, SlackCommandRequest request, SlackParsedCommand command,
+                               RuntimeException error) {
+        this.index = index;
+        this.request = request;
+        this.command = command;
+        this.error = error;
+    }
+
+    public static SlackCommandResult success(long index, SlackCommandRequest request, SlackParsedCommand command) {
+        return new SlackCommandResult(index, request, command, null);
+    }
+
+    public static SlackCommandResult failure(long index, SlackCommandRequest request, RuntimeException error) {
+        return new SlackCommandResult(index, request, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -1,46 +1,88 @@
 package ua.com.juja.slack.command.handler.model;
 
-import lombok.AllArgsConstructor;
-import lombok.EqualsAndHashCode;
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import ua.com.juja.slack.command.handler.exception.ParseSlackCommandException;
+import ua.com.juja.slack.command.handler.exception.SlackCommandErrorCode;
+import ua.com.juja.slack.command.handler.metrics.SlackCommandMetrics;
+import ua.com.juja.slack.command.handler.parser.SlackMention;
+import ua.com.juja.slack.command.handler.parser.SlackMentionIndex;
+import ua.com.juja.slack.command.handler.parser.SlackMentionScanner;
+import ua.com.juja.slack.command.handler.parser.SlackTokenMatcher;
+import ua.com.juja.slack.command.handler.parser.SlackTokenOccurrences;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * @author Nikolay Horushko
  * @author Konstantin Sergey
  */
-@EqualsAndHashCode
 @Slf4j
 public class SlackParsedCommand {
-    private final String escapedUserInSlackCommand = "<@\\w+\\|([a-zA-z0-9._-]){1,21}>";
-    private UserDTO fromUserData;
-    private String text;
-    private List<UserDTO> usersInText;
+    private final UserDTO fromUserData;
+    private final String text;
+    private final List<UserDTO> usersInText;
+    private final SlackCommandMetrics metrics;
+    // derived views, computed at most once on first access
+    private volatile SlackMentionIndex mentionIndex;
+    private volatile String textWithoutSlackNames;
+    private volatile Map<String, UserDTO> usersBySlackId;
 
     public SlackParsedCommand(UserDTO fromUserData, String text, List<UserDTO> usersInText) {
-        this.fromUserData = fromUserData;
-        this.text = text;
-        this.usersInText = usersInText;
+        this(fromUserData, (CharSequence) text, usersInText);
+    }
+
+    public SlackParsedCommand(UserDTO fromUserData, CharSequence text, List<UserDTO> usersInText) {
+        this(fromUserData, text, usersInText, null);
+    }
 
-        log.debug("SlackParsedCommand created with parameters: " +
-                        "fromSlackName: [{}] text: [{}] userCountInText [{}] usersInText: [{}]",
-                fromUserData, text, usersInText.size(), usersInText.toString());
+    /**
+     * A text which isn't a String is copied to a String here, when the command is created, not on
+     * {@link #getText()}, so the command stays immutable when the caller reuses its buffer
+     *
+     * @param mentionIndex of the text if it is already scanned, null to scan the text on demand
+     */
+    public SlackParsedCommand(UserDTO fromUserData, CharSequence text, List<UserDTO> usersInText,
+                              SlackMentionIndex mentionIndex) {
+        this(fromUserData, text, usersInText, mentionIndex, SlackCommandMetrics.NONE);
+    }
+
+    /**
+     * @param metrics records the ParseSlackCommandException of the getters by error code, like the service
+     *                records its own failures
+     */
+    public SlackParsedCommand(UserDTO fromUserData, CharSequence text, List<UserDTO> usersInText,
+                              SlackMentionIndex mentionIndex, SlackCommandMetrics metrics) {
+        this.fromUserData = fromUserData;
+        this.text = text == null ? null : text.toString();
+        this.usersInText = Collections.unmodifiableList(new ArrayList<>(usersInText));
+        this.mentionIndex = mentionIndex;
+        this.metrics = metrics;
+
+        if (log.isDebugEnabled()) {
+            log.debug("SlackParsedCommand created with parameters: " +
+                            "fromSlackName: [{}] text: [{}] userCountInText [{}] usersInText: [{}]",
+                    fromUserData, text, usersInText.size(), usersInText);
+        }
     }
 
     public List<UserDTO> getAllUsersInText() {
-        log.debug("SlackParsedCommand get all users in text {}", usersInText.toString());
+        log.debug("SlackParsedCommand get all users in text {}", usersInText);
         return usersInText;
     }
 
+    public SlackMentionIndex getMentionIndex() {
+        SlackMentionIndex result = mentionIndex;
+        if (result == null) {
+            result = SlackMentionScanner.scan(text);
+            mentionIndex = result;
+        }
+        return result;
+    }
+
     public UserDTO getFirstUserFromText() {
         if (usersInText.size() == 0) {
-            log.warn("The text: '{}' doesn't contain any slack names", text);
-            throw new ParseSlackCommandException(String.format("The text '%s' doesn't contain any slack names", text));
+            log.debug("The text: '{}' doesn't contain any slack names", text);
+            throw failure(new ParseSlackCommandException(SlackCommandErrorCode.NO_SLACK_NAMES, text));
         } else {
             UserDTO result = usersInText.get(0);
             log.debug("SlackParsedCommand get firstUser [{}] from text [{}]", result, text);
@@ -49,8 +91,11 @@ public class SlackParsedCommand {
     }
 
     public String getTextWithoutSlackNames() {
-        String result = text.replaceAll(escapedUserInSlackCommand, "");
-        result = result.replaceAll("\\s+", " ").trim();
+        String result = textWithoutSlackNames;
+        if (result == null) {
+            result = getMentionIndex().stripMentions(text);
+            textWithoutSlackNames = result;
+        }
         log.debug("SlackParsedCommand get text without slack names [{}] original text [{}]", result, text);
         return result;
     }
@@ -67,83 +112,119 @@ public class SlackParsedCommand {
 
     public int getUserCountInText() {
         int result = usersInText.size();
-        log.debug("SlackParsedCommand get user count in text [{}]", result);
+        if (log.isDebugEnabled()) {
+            log.debug("SlackParsedCommand get user count in text [{}]", result);
+        }
         return result;
     }
 
     public Map<String, UserDTO> getUsersWithTokens(Set<String> tokens) throws ParseSlackCommandException {
-        log.debug("Recieve tokens: [{}] for searching. in the text: [{}]", tokens, text);
-        List<Token> sortedTokenList = receiveTokensWithPositionInText(tokens);
-        Map<String, UserDTO> result = findSlackNamesForTokensInText(sortedTokenList);
-        log.debug("SlackParsedCommand recieved Users with Tokens [{}] from text [{}]", result.toString(), text);
+        return getUsersWithTokens(SlackTokenMatcher.compile(tokens));
+    }
+
+    /**
+     * The same as {@link #getUsersWithTokens(Set)} for tokens compiled once and reused for many commands
+     */
+    public Map<String, UserDTO> getUsersWithTokens(SlackTokenMatcher tokens) throws ParseSlackCommandException {
+        log.debug("Recieve tokens: [{}] for searching. in the text: [{}]", tokens.getTokens(), text);
+        SlackTokenOccurrences occurrences = receiveTokensWithPositionInText(tokens);
+        Map<String, UserDTO> result = findSlackNamesForTokensInText(occurrences);
+        log.debug("SlackParsedCommand recieved Users with Tokens [{}] from text [{}]", result, text);
         return result;
     }
 
-    private List<Token> receiveTokensWithPositionInText(Set<String> tokens) {
-        Set<Token> result = new TreeSet<>();
-        for (String token : tokens) {
-            if (!text.contains(token)) {
-                throw new ParseSlackCommandException(String.format("Token '%s' didn't find in the string '%s'",
-                        token, text));
+    private SlackTokenOccurrences receiveTokensWithPositionInText(SlackTokenMatcher tokens) {
+        SlackTokenOccurrences result = tokens.match(text);
+        for (int index = 0; index < result.tokenCount(); index++) {
+            String token = result.getToken(index);
+            int tokenCounts = result.getCount(index);
+            if (tokenCounts == 0) {
+                throw failure(new ParseSlackCommandException(SlackCommandErrorCode.TOKEN_NOT_FOUND, token, text));
             }
-            int tokenCounts = text.split(token).length - 1;
             if (tokenCounts > 1) {
-                throw new ParseSlackCommandException(String.format("The text '%s' contains %d tokens '%s', " +
-                        "but expected 1", text, tokenCounts, token));
+                throw failure(new ParseSlackCommandException(SlackCommandErrorCode.DUPLICATED_TOKEN, text,
+                        tokenCounts, token));
             }
-            result.add(new Token(token, text.indexOf(token)));
         }
-        return new ArrayList<>(result);
+        return result;
     }
 
-    private Map<String, UserDTO> findSlackNamesForTokensInText(List<Token> sortedTokenList) {
+    /**
+     * Tokens and mentions are both ordered by position, so one sweep binds every token
+     * to the first mention after it, which has to be before the next token.
+     */
+    private Map<String, UserDTO> findSlackNamesForTokensInText(SlackTokenOccurrences occurrences) {
         Map<String, UserDTO> result = new HashMap<>();
-
-        for (int index = 0; index < sortedTokenList.size(); index++) {
-            Token currentToken = sortedTokenList.get(index);
-            Pattern pattern = Pattern.compile(escapedUserInSlackCommand);
-            Matcher matcher = pattern.matcher(text.substring(text.indexOf(currentToken.getToken())));
-            if (matcher.find()) {
-                String foundedEscapedUser = matcher.group().trim();
-                int indexFoundedSlackName = text.indexOf(foundedEscapedUser);
-                for (int j = index + 1; j < sortedTokenList.size(); j++) {
-                    if (indexFoundedSlackName > sortedTokenList.get(j).getPositionInText()) {
-                        log.warn("The text: [{}] doesn't contain slack name for token: [{}]",
-                                text, currentToken.getToken());
-                        throw new ParseSlackCommandException(String.format("The text '%s' doesn't contain slackName " +
-                                "for token '%s'", text, currentToken.getToken()));
-                    }
-                }
-                addFoundedSlackToResult(currentToken, foundedEscapedUser, result);
-            } else {
-                log.warn("The text: [{}] doesn't contain slack name for token: [{}]",
-                        text, sortedTokenList.get(index).getToken());
-                throw new ParseSlackCommandException(String.format("The text '%s' " +
-                        "doesn't contain slackName for token '%s'", text, sortedTokenList.get(index).getToken()));
+        List<SlackMention> mentions = getMentionIndex().getMentions();
+        int[] sortedTokens = occurrences.foundTokensInTextOrder();
+
+        int mentionPosition = 0;
+        for (int index = 0; index < sortedTokens.length; index++) {
+            String currentToken = occurrences.getToken(sortedTokens[index]);
+            int tokenPosition = occurrences.getFirstPosition(sortedTokens[index]);
+            while (mentionPosition < mentions.size() && mentions.get(mentionPosition).getStart() < tokenPosition) {
+                mentionPosition++;
             }
+            boolean isLastToken = index + 1 == sortedTokens.length;
+            if (mentionPosition == mentions.size() || !isLastToken &&
+                    mentions.get(mentionPosition).getStart() > occurrences.getFirstPosition(sortedTokens[index + 1])) {
+                log.debug("The text: [{}] doesn't contain slack name for token: [{}]", text, currentToken);
+                throw failure(new ParseSlackCommandException(SlackCommandErrorCode.NO_SLACK_NAME_FOR_TOKEN, text,
+                        currentToken));
+            }
+            addFoundedSlackToResult(currentToken, mentions.get(mentionPosition), result);
         }
         return result;
     }
 
-    private void addFoundedSlackToResult(Token currentToken, String foundedSlackName, Map<String, UserDTO> result) {
-        for (UserDTO item : usersInText) {
-            if (item.getSlackId().equals(foundedSlackName.substring(foundedSlackName.indexOf('@')+1, foundedSlackName.indexOf('|')))) {
-                log.debug("Found user: {} for token:", item, currentToken.getToken());
-                result.put(currentToken.getToken(), item);
-            }
+    private void addFoundedSlackToResult(String currentToken, SlackMention foundedMention, Map<String, UserDTO> result) {
+        UserDTO item = getUsersBySlackId().get(foundedMention.getSlackId());
+        if (item != null) {
+            log.debug("Found user: {} for token: {}", item, currentToken);
+            result.put(currentToken, item);
         }
     }
 
-    @AllArgsConstructor
-    @Getter
-    private final class Token implements Comparable {
-        private final String token;
-        private final int positionInText;
+    private ParseSlackCommandException failure(ParseSlackCommandException e) {
+        metrics.recordFailure(e.getErrorCode().name());
+        return e;
+    }
+
+    /**
+     * @return user from the text with the slackId or null if there is no such user
+     */
+    public UserDTO getUserBySlackId(String slackId) {
+        return getUsersBySlackId().get(slackId);
+    }
 
-        @Override
-        public int compareTo(Object object) {
-            Token thatToken = (Token) object;
-            return positionInText - thatToken.getPositionInText();
+    private Map<String, UserDTO> getUsersBySlackId() {
+        Map<String, UserDTO> result = usersBySlackId;
+        if (result == null) {
+            Map<String, UserDTO> users = new HashMap<>();
+            for (UserDTO user : usersInText) {
+                users.put(user.getSlackId(), user);
+            }
+            result = Collections.unmodifiableMap(users);
+            usersBySlackId = result;
         }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SlackParsedCommand)) {
+            return false;
+        }
+        SlackParsedCommand other = (SlackParsedCommand) o;
+        return Objects.equals(fromUserData, other.fromUserData) && Objects.equals(text, other.text)
+                && usersInText.equals(other.usersInText);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fromUserData, text, usersInText);
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package ua.com.juja.slack.command.handler.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The user with the slackId or the uuid was changed (deactivated, linked to another slack account, ...),
+ * so users cached for them are outdated. One of slackId and uuid can be null.
+ * <p>
+ * version grows with every change of the user, e.g. its update time or a sequence number of the event source,
+ * so a redelivered or late event is recognized. {@link #NO_VERSION} events are always applied.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@EqualsAndHashCode
+public final class UserChangeEvent {
+    public static final long NO_VERSION = Long.MIN_VALUE;
+
+    private final String slackId;
+    private final String uuid;
+    private final long version;
+
+    public static UserChangeEvent ofSlackId(String slackId, long version) {
+        return new UserChangeEvent(slackId, null, version);
+    }
+
+    public static UserChangeEvent ofUuid(String uuid, long version) {
+        return new UserChangeEvent(null, uuid, version);
+    }
+
+    /**
+     * @return true if the user has the slackId or the uuid of the event
+     */
+    public boolean matches(UserDTO user) {
+        return user != null && (slackId != null && slackId.equals(user.getSlackId())
+                || uuid != null && uuid.equals(user.getUuid()));
+    }
+
+    public boolean matchesSlackId(String otherSlackId) {
+        return slackId != null && slackId.equals(otherSlackId);
+    }
+
+    public boolean hasVersion() {
+        return version != NO_VERSION;
+    }
+}
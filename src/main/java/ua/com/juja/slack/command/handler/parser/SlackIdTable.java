@@ -0,0 +1,100 @@
+package ua.com.juja.slack.command.handler.parser;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock free intern table for slackIds. A char range of the text which is already in the table
+ * is resolved to the canonical String without allocation, so repeated slackIds of different commands
+ * share one String instance with an already computed hash code.
+ * <p>
+ * slackIds come from the command text, so the table can't be filled up for good: when a value finds no free slot
+ * (the table is half full or the probes are used up) it replaces the value in its home slot.
+ * Frequent slackIds win their slots back on the next occurrence. {@link #clear()} empties the table.
+ */
+public final class SlackIdTable {
+
+    private static final int MAX_INTERNED_LENGTH = 32;
+    private static final int MAX_PROBES = 16;
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+    private final int maxSize;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param capacity rounded up to a power of two, new values take free slots until the table is half full
+     */
+    public SlackIdTable(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException(String.format("Capacity [%d] is too small", capacity));
+        }
+        int tableSize = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(tableSize);
+        this.mask = tableSize - 1;
+        this.maxSize = tableSize / 2;
+    }
+
+    public String intern(CharSequence source, int start, int end) {
+        if (end - start > MAX_INTERNED_LENGTH) {
+            return source.subSequence(start, end).toString();
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        int home = (hash ^ (hash >>> 16)) & mask;
+        int index = home;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            String candidate = slots.get(index);
+            if (candidate == null) {
+                if (size.get() >= maxSize) {
+                    break;
+                }
+                String value = source.subSequence(start, end).toString();
+                if (slots.compareAndSet(index, null, value)) {
+                    size.incrementAndGet();
+                    return value;
+                }
+                candidate = slots.get(index);
+            }
+            if (candidate.hashCode() == hash && regionEquals(candidate, source, start, end)) {
+                return candidate;
+            }
+            index = (index + 1) & mask;
+        }
+        String value = source.subSequence(start, end).toString();
+        String evicted = slots.get(home);
+        if (slots.compareAndSet(home, evicted, value) && evicted == null) {
+            size.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * @return count of occupied slots, approximate while the table is cleared
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public void clear() {
+        for (int index = 0; index < slots.length(); index++) {
+            if (slots.getAndSet(index, null) != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    private static boolean regionEquals(String candidate, CharSequence source, int start, int end) {
+        if (candidate.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < candidate.length(); i++) {
+            if (candidate.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package ua.com.juja.slack.command.handler.parser;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Escaped slack user <@slackId|slackName> found in the command text.
+ * start is inclusive, end is exclusive.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@EqualsAndHashCode
+public final class SlackMention {
+    private final int start;
+    private final int end;
+    private final String slackId;
+    private final String slackName;
+}
@@ -0,0 +1,117 @@
+package ua.com.juja.slack.command.handler.parser;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable list of mentions in the order they appear in the command text.
+ */
+@ToString
+@EqualsAndHashCode
+public final class SlackMentionIndex {
+    public static final SlackMentionIndex EMPTY = new SlackMentionIndex(Collections.emptyList());
+
+    private final List<SlackMention> mentions;
+    private final List<String> slackIds;
+
+    SlackMentionIndex(List<SlackMention> mentions) {
+        this.mentions = Collections.unmodifiableList(mentions);
+        List<String> ids = new ArrayList<>(mentions.size());
+        for (SlackMention mention : mentions) {
+            ids.add(mention.getSlackId());
+        }
+        this.slackIds = Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * Index of mentions which were found before, e.g. deserialized
+     *
+     * @throws IllegalArgumentException if the mentions aren't ordered by position or overlap
+     */
+    public static SlackMentionIndex of(List<SlackMention> mentions) {
+        int previousEnd = 0;
+        for (SlackMention mention : mentions) {
+            if (mention.getStart() < previousEnd || mention.getEnd() <= mention.getStart()) {
+                throw new IllegalArgumentException(String.format("Wrong order of the mentions %s", mentions));
+            }
+            previousEnd = mention.getEnd();
+        }
+        return mentions.isEmpty() ? EMPTY : new SlackMentionIndex(new ArrayList<>(mentions));
+    }
+
+    public List<SlackMention> getMentions() {
+        return mentions;
+    }
+
+    /**
+     * slackIds in text order, duplicates included
+     */
+    public List<String> getSlackIds() {
+        return slackIds;
+    }
+
+    public int size() {
+        return mentions.size();
+    }
+
+    public boolean isEmpty() {
+        return mentions.isEmpty();
+    }
+
+    /**
+     * @return index of the first mention which starts at or after position, or size() if there is none
+     */
+    public int firstMentionFrom(int position) {
+        int low = 0;
+        int high = mentions.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mentions.get(middle).getStart() < position) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Removes all mentions from the text, collapses whitespace runs to a single space and trims the result
+     */
+    public String stripMentions(CharSequence text) {
+        StringBuilder result = new StringBuilder(text.length());
+        int mentionIndex = 0;
+        int nextMentionStart = mentions.isEmpty() ? -1 : mentions.get(0).getStart();
+        boolean inWhitespace = false;
+        int position = 0;
+        while (position < text.length()) {
+            if (position == nextMentionStart) {
+                position = mentions.get(mentionIndex).getEnd();
+                mentionIndex++;
+                nextMentionStart = mentionIndex < mentions.size() ? mentions.get(mentionIndex).getStart() : -1;
+                continue;
+            }
+            char symbol = text.charAt(position++);
+            if (isWhitespace(symbol)) {
+                if (!inWhitespace) {
+                    result.append(' ');
+                    inWhitespace = true;
+                }
+            } else {
+                result.append(symbol);
+                inWhitespace = false;
+            }
+        }
+        return result.toString().trim();
+    }
+
+    // the same set of characters as \s in java.util.regex
+    private static boolean isWhitespace(char symbol) {
+        return symbol == ' ' || symbol == '\t' || symbol == '\n' || symbol == '\u000B'
+                || symbol == '\f' || symbol == '\r';
+    }
+}
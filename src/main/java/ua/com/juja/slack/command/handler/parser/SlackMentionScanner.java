@@ -0,0 +1,128 @@
+package ua.com.juja.slack.command.handler.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass scanner for escaped slack users <@slackId|slackName> in the command text.
+ * Matches the same mentions as the regular expression {@code <@\w+\|([a-zA-z0-9._-]){1,21}>}
+ * without compiling or running a regular expression.
+ * <p>
+ * The scanner is a state machine over the source: {@link #advanceTo(int)} can be called repeatedly
+ * while the source is growing. Instances are not thread safe.
+ */
+public final class SlackMentionScanner {
+    private static final int MAX_SLACK_NAME_LENGTH = 21;
+
+    private static final int IDLE = 0;
+    private static final int OPENED = 1;
+    private static final int IN_SLACK_ID = 2;
+    private static final int IN_SLACK_NAME = 3;
+
+    private final CharSequence source;
+    private final SlackIdTable slackIdTable;
+    private final List<SlackMention> mentions = new ArrayList<>();
+    private int position;
+    private int state = IDLE;
+    private int mentionStart;
+    private int slackIdStart;
+    private int slackNameStart;
+
+    public SlackMentionScanner(CharSequence source) {
+        this(source, null);
+    }
+
+    /**
+     * @param slackIdTable slackIds are interned in, null to not intern them
+     */
+    public SlackMentionScanner(CharSequence source, SlackIdTable slackIdTable) {
+        this.source = source;
+        this.slackIdTable = slackIdTable;
+    }
+
+    public static SlackMentionIndex scan(CharSequence text) {
+        return scan(text, null);
+    }
+
+    /**
+     * @param slackIdTable slackIds are interned in, null to not intern them
+     */
+    public static SlackMentionIndex scan(CharSequence text, SlackIdTable slackIdTable) {
+        SlackMentionScanner scanner = new SlackMentionScanner(text, slackIdTable);
+        scanner.advanceTo(text.length());
+        return scanner.toIndex();
+    }
+
+    /**
+     * Processes characters of the source up to (exclusive) the given position
+     */
+    public void advanceTo(int limit) {
+        while (position < limit) {
+            accept(source.charAt(position), position);
+            position++;
+        }
+    }
+
+    public SlackMentionIndex toIndex() {
+        return mentions.isEmpty() ? SlackMentionIndex.EMPTY : new SlackMentionIndex(new ArrayList<>(mentions));
+    }
+
+    private void accept(char symbol, int at) {
+        switch (state) {
+            case OPENED:
+                if (symbol == '@') {
+                    state = IN_SLACK_ID;
+                    slackIdStart = at + 1;
+                    return;
+                }
+                break;
+            case IN_SLACK_ID:
+                if (isWordChar(symbol)) {
+                    return;
+                }
+                if (symbol == '|' && at > slackIdStart) {
+                    state = IN_SLACK_NAME;
+                    slackNameStart = at + 1;
+                    return;
+                }
+                break;
+            case IN_SLACK_NAME:
+                int nameLength = at - slackNameStart;
+                if (isSlackNameChar(symbol) && nameLength < MAX_SLACK_NAME_LENGTH) {
+                    return;
+                }
+                if (symbol == '>' && nameLength > 0) {
+                    mentions.add(new SlackMention(mentionStart, at + 1, slackId(slackIdStart, slackNameStart - 1),
+                            source.subSequence(slackNameStart, at).toString()));
+                    state = IDLE;
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        // the candidate failed (or there was none); '<' is the only symbol which can start a new one
+        if (symbol == '<') {
+            state = OPENED;
+            mentionStart = at;
+        } else {
+            state = IDLE;
+        }
+    }
+
+    private String slackId(int start, int end) {
+        return slackIdTable == null ? source.subSequence(start, end).toString()
+                : slackIdTable.intern(source, start, end);
+    }
+
+    private static boolean isWordChar(char symbol) {
+        return (symbol >= 'a' && symbol <= 'z') || (symbol >= 'A' && symbol <= 'Z')
+                || (symbol >= '0' && symbol <= '9') || symbol == '_';
+    }
+
+    // [a-zA-z0-9._-]: the range A-z also contains [ \ ] ^ _ `
+    private static boolean isSlackNameChar(char symbol) {
+        return (symbol >= 'A' && symbol <= 'z') || (symbol >= '0' && symbol <= '9')
+                || symbol == '.' || symbol == '-';
+    }
+}
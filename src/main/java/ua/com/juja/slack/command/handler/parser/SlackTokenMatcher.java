@@ -0,0 +1,179 @@
+package ua.com.juja.slack.command.handler.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Aho-Corasick automaton which finds all the tokens in the text in one pass.
+ * Immutable and thread safe, so it can be compiled once and reused for every command.
+ */
+public final class SlackTokenMatcher {
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final List<String> tokens;
+    private final char[] alphabet;
+    private final int[] asciiClasses;
+    // transitions[state * alphabet.length + charClass] for the full deterministic automaton
+    private final int[] transitions;
+    // token indexes which end in the state
+    private final int[][] outputs;
+
+    private SlackTokenMatcher(List<String> tokens, char[] alphabet, int[] asciiClasses, int[] transitions,
+                              int[][] outputs) {
+        this.tokens = tokens;
+        this.alphabet = alphabet;
+        this.asciiClasses = asciiClasses;
+        this.transitions = transitions;
+        this.outputs = outputs;
+    }
+
+    /**
+     * @param tokens in the order they should be reported, must not be empty strings
+     */
+    public static SlackTokenMatcher compile(Collection<String> tokens) {
+        List<String> tokenList = Collections.unmodifiableList(new ArrayList<>(tokens));
+        TreeSet<Character> symbols = new TreeSet<>();
+        for (String token : tokenList) {
+            if (token.isEmpty()) {
+                throw new IllegalArgumentException("Token can't be empty");
+            }
+            for (int i = 0; i < token.length(); i++) {
+                symbols.add(token.charAt(i));
+            }
+        }
+        char[] alphabet = new char[symbols.size()];
+        int[] asciiClasses = new int[128];
+        Arrays.fill(asciiClasses, -1);
+        int classIndex = 0;
+        for (Character symbol : symbols) {
+            alphabet[classIndex] = symbol;
+            if (symbol < 128) {
+                asciiClasses[symbol] = classIndex;
+            }
+            classIndex++;
+        }
+
+        // trie
+        int width = Math.max(alphabet.length, 1);
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> trieOutputs = new ArrayList<>();
+        trie.add(newRow(width));
+        trieOutputs.add(new ArrayList<>());
+        for (int tokenIndex = 0; tokenIndex < tokenList.size(); tokenIndex++) {
+            String token = tokenList.get(tokenIndex);
+            int state = 0;
+            for (int i = 0; i < token.length(); i++) {
+                int symbolClass = Arrays.binarySearch(alphabet, token.charAt(i));
+                if (trie.get(state)[symbolClass] < 0) {
+                    trie.get(state)[symbolClass] = trie.size();
+                    trie.add(newRow(width));
+                    trieOutputs.add(new ArrayList<>());
+                }
+                state = trie.get(state)[symbolClass];
+            }
+            trieOutputs.get(state).add(tokenIndex);
+        }
+
+        // failure links resolved into a full transition table in breadth first order
+        int stateCount = trie.size();
+        int[] transitions = new int[stateCount * width];
+        int[] failure = new int[stateCount];
+        int[][] outputs = new int[stateCount][];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int symbolClass = 0; symbolClass < width; symbolClass++) {
+            int next = trie.get(0)[symbolClass];
+            if (next > 0) {
+                transitions[symbolClass] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        outputs[0] = NO_OUTPUT;
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            List<Integer> stateOutputs = new ArrayList<>(trieOutputs.get(state));
+            for (int tokenIndex : outputs[failure[state]]) {
+                stateOutputs.add(tokenIndex);
+            }
+            outputs[state] = toArray(stateOutputs);
+            for (int symbolClass = 0; symbolClass < width; symbolClass++) {
+                int next = trie.get(state)[symbolClass];
+                if (next > 0) {
+                    transitions[state * width + symbolClass] = next;
+                    failure[next] = transitions[failure[state] * width + symbolClass];
+                    queue.add(next);
+                } else {
+                    transitions[state * width + symbolClass] = transitions[failure[state] * width + symbolClass];
+                }
+            }
+        }
+        return new SlackTokenMatcher(tokenList, alphabet, asciiClasses, transitions, outputs);
+    }
+
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Counts non overlapping occurrences of every token (as String.indexOf would find them one after another)
+     * and remembers the first position of each.
+     */
+    public SlackTokenOccurrences match(CharSequence text) {
+        int tokenCount = tokens.size();
+        int[] firstPositions = new int[tokenCount];
+        int[] counts = new int[tokenCount];
+        int[] nextAllowedStart = new int[tokenCount];
+        Arrays.fill(firstPositions, -1);
+        if (tokenCount == 0) {
+            return new SlackTokenOccurrences(this, firstPositions, counts);
+        }
+        int width = alphabet.length;
+        int state = 0;
+        for (int position = 0; position < text.length(); position++) {
+            int symbolClass = classOf(text.charAt(position));
+            state = symbolClass < 0 ? 0 : transitions[state * width + symbolClass];
+            for (int tokenIndex : outputs[state]) {
+                int start = position + 1 - tokens.get(tokenIndex).length();
+                if (start >= nextAllowedStart[tokenIndex]) {
+                    if (counts[tokenIndex] == 0) {
+                        firstPositions[tokenIndex] = start;
+                    }
+                    counts[tokenIndex]++;
+                    nextAllowedStart[tokenIndex] = position + 1;
+                }
+            }
+        }
+        return new SlackTokenOccurrences(this, firstPositions, counts);
+    }
+
+    private int classOf(char symbol) {
+        if (symbol < 128) {
+            return asciiClasses[symbol];
+        }
+        int result = Arrays.binarySearch(alphabet, symbol);
+        return result < 0 ? -1 : result;
+    }
+
+    private static int[] newRow(int width) {
+        int[] row = new int[width];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        if (values.isEmpty()) {
+            return NO_OUTPUT;
+        }
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
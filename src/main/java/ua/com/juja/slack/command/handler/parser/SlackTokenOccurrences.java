@@ -0,0 +1,63 @@
+package ua.com.juja.slack.command.handler.parser;
+
+import java.util.Arrays;
+
+/**
+ * Result of {@link SlackTokenMatcher#match(CharSequence)}, token indexes are the indexes in
+ * {@link SlackTokenMatcher#getTokens()}
+ */
+public final class SlackTokenOccurrences {
+    private final SlackTokenMatcher matcher;
+    private final int[] firstPositions;
+    private final int[] counts;
+
+    SlackTokenOccurrences(SlackTokenMatcher matcher, int[] firstPositions, int[] counts) {
+        this.matcher = matcher;
+        this.firstPositions = firstPositions;
+        this.counts = counts;
+    }
+
+    public int tokenCount() {
+        return counts.length;
+    }
+
+    public String getToken(int tokenIndex) {
+        return matcher.getTokens().get(tokenIndex);
+    }
+
+    public int getCount(int tokenIndex) {
+        return counts[tokenIndex];
+    }
+
+    /**
+     * @return position of the first occurrence or -1 if the token isn't in the text
+     */
+    public int getFirstPosition(int tokenIndex) {
+        return firstPositions[tokenIndex];
+    }
+
+    /**
+     * @return indexes of found tokens ordered by the first position in the text
+     */
+    public int[] foundTokensInTextOrder() {
+        int found = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                found++;
+            }
+        }
+        long[] keys = new long[found];
+        int index = 0;
+        for (int tokenIndex = 0; tokenIndex < counts.length; tokenIndex++) {
+            if (counts[tokenIndex] > 0) {
+                keys[index++] = ((long) firstPositions[tokenIndex] << 32) | tokenIndex;
+            }
+        }
+        Arrays.sort(keys);
+        int[] result = new int[found];
+        for (int i = 0; i < found; i++) {
+            result[i] = (int) keys[i];
+        }
+        return result;
+    }
+}
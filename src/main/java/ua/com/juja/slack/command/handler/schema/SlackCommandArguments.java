@@ -0,0 +1,46 @@
+package ua.com.juja.slack.command.handler.schema;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Users bound to the tokens of a {@link SlackCommandSchema}. Contains only the tokens found in the text.
+ */
+@ToString
+@EqualsAndHashCode
+public final class SlackCommandArguments {
+    private final Map<String, List<UserDTO>> usersByToken;
+
+    SlackCommandArguments(Map<String, List<UserDTO>> usersByToken) {
+        this.usersByToken = Collections.unmodifiableMap(usersByToken);
+    }
+
+    public boolean hasToken(String token) {
+        return usersByToken.containsKey(token);
+    }
+
+    /**
+     * @return users after the token, empty list if the token isn't in the text
+     */
+    public List<UserDTO> getUsers(String token) {
+        List<UserDTO> result = usersByToken.get(token);
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /**
+     * @return the first user after the token or null if there is none
+     */
+    public UserDTO getUser(String token) {
+        List<UserDTO> result = getUsers(token);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    public Map<String, List<UserDTO>> asMap() {
+        return usersByToken;
+    }
+}
@@ -0,0 +1,141 @@
+package ua.com.juja.slack.command.handler.schema;
+
+import lombok.extern.slf4j.Slf4j;
+import ua.com.juja.slack.command.handler.exception.ParseSlackCommandException;
+import ua.com.juja.slack.command.handler.exception.SlackCommandErrorCode;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+import ua.com.juja.slack.command.handler.parser.SlackMention;
+import ua.com.juja.slack.command.handler.parser.SlackMentionIndex;
+import ua.com.juja.slack.command.handler.parser.SlackMentionScanner;
+import ua.com.juja.slack.command.handler.parser.SlackTokenMatcher;
+import ua.com.juja.slack.command.handler.parser.SlackTokenOccurrences;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Token layout of a slash command compiled once and applied to every command.
+ * Immutable and thread safe.
+ * <p>
+ * Every found token is bound to the slack names between it and the next found token,
+ * the first userCount of them are taken.
+ */
+@Slf4j
+public final class SlackCommandSchema {
+    private final List<TokenRule> rules;
+    private final SlackTokenMatcher tokenMatcher;
+
+    private SlackCommandSchema(List<TokenRule> rules, SlackTokenMatcher tokenMatcher) {
+        this.rules = rules;
+        this.tokenMatcher = tokenMatcher;
+    }
+
+    /**
+     * All the tokens are required and expect one slack name, as {@link SlackParsedCommand#getUsersWithTokens(Set)}
+     */
+    public static SlackCommandSchema compile(Set<String> tokens) {
+        List<TokenRule> rules = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            rules.add(TokenRule.required(token));
+        }
+        return compile(rules);
+    }
+
+    public static SlackCommandSchema compile(Collection<TokenRule> rules) {
+        List<String> tokens = new ArrayList<>(rules.size());
+        Set<String> uniqueTokens = new HashSet<>();
+        for (TokenRule rule : rules) {
+            if (!uniqueTokens.add(rule.getToken()) || rule.getUserCount() < 0) {
+                throw new IllegalArgumentException(String.format("Wrong token rule %s in %s", rule, rules));
+            }
+            tokens.add(rule.getToken());
+        }
+        return new SlackCommandSchema(Collections.unmodifiableList(new ArrayList<>(rules)),
+                SlackTokenMatcher.compile(tokens));
+    }
+
+    public List<TokenRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Checks the text before users are received from the user service
+     *
+     * @return slack names bound to the found tokens
+     * @throws ParseSlackCommandException if the text doesn't match the schema
+     */
+    public Map<String, List<SlackMention>> validate(CharSequence text) throws ParseSlackCommandException {
+        return validate(text, SlackMentionScanner.scan(text));
+    }
+
+    public Map<String, List<SlackMention>> validate(CharSequence text, SlackMentionIndex mentionIndex)
+            throws ParseSlackCommandException {
+        SlackTokenOccurrences occurrences = tokenMatcher.match(text);
+        for (int index = 0; index < rules.size(); index++) {
+            TokenRule rule = rules.get(index);
+            int tokenCounts = occurrences.getCount(index);
+            if (tokenCounts == 0 && rule.isRequired()) {
+                throw new ParseSlackCommandException(SlackCommandErrorCode.TOKEN_NOT_FOUND, rule.getToken(), text);
+            }
+            if (tokenCounts > 1) {
+                throw new ParseSlackCommandException(SlackCommandErrorCode.DUPLICATED_TOKEN, text, tokenCounts,
+                        rule.getToken());
+            }
+        }
+
+        Map<String, List<SlackMention>> result = new LinkedHashMap<>();
+        List<SlackMention> mentions = mentionIndex.getMentions();
+        int[] sortedTokens = occurrences.foundTokensInTextOrder();
+        for (int index = 0; index < sortedTokens.length; index++) {
+            TokenRule rule = rules.get(sortedTokens[index]);
+            int from = mentionIndex.firstMentionFrom(occurrences.getFirstPosition(sortedTokens[index]));
+            int to = index + 1 == sortedTokens.length ? mentions.size()
+                    : mentionIndex.firstMentionFrom(occurrences.getFirstPosition(sortedTokens[index + 1]));
+            if (to - from < rule.getUserCount()) {
+                log.debug("The text: [{}] doesn't contain slack name for token: [{}]", text, rule.getToken());
+                if (rule.getUserCount() == 1) {
+                    throw new ParseSlackCommandException(SlackCommandErrorCode.NO_SLACK_NAME_FOR_TOKEN, text,
+                            rule.getToken());
+                }
+                throw new ParseSlackCommandException(SlackCommandErrorCode.WRONG_SLACK_NAME_COUNT, text, to - from,
+                        rule.getToken(), rule.getUserCount());
+            }
+            result.put(rule.getToken(), mentions.subList(from, from + rule.getUserCount()));
+        }
+        return result;
+    }
+
+    /**
+     * @throws ParseSlackCommandException if the text of the command doesn't match the schema
+     */
+    public SlackCommandArguments apply(SlackParsedCommand command) throws ParseSlackCommandException {
+        return apply(command, validate(command.getText(), command.getMentionIndex()));
+    }
+
+    /**
+     * Binds users of the command to the mentions found by {@link #validate(CharSequence, SlackMentionIndex)}
+     * of its text, without validating the text again
+     */
+    public SlackCommandArguments apply(SlackParsedCommand command, Map<String, List<SlackMention>> mentionsByToken) {
+        Map<String, List<UserDTO>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<SlackMention>> entry : mentionsByToken.entrySet()) {
+            List<UserDTO> users = new ArrayList<>(entry.getValue().size());
+            for (SlackMention mention : entry.getValue()) {
+                UserDTO user = command.getUserBySlackId(mention.getSlackId());
+                if (user != null) {
+                    users.add(user);
+                }
+            }
+            result.put(entry.getKey(), Collections.unmodifiableList(users));
+        }
+        log.debug("Schema applied to the text [{}], result [{}]", command.getText(), result);
+        return new SlackCommandArguments(result);
+    }
+}
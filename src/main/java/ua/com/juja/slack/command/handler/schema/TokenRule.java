@@ -0,0 +1,36 @@
+package ua.com.juja.slack.command.handler.schema;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Declares a token of the command and how many slack names have to follow it.
+ * userCount 0 declares a flag without slack names.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@EqualsAndHashCode
+public final class TokenRule {
+    private final String token;
+    private final boolean required;
+    private final int userCount;
+
+    public static TokenRule required(String token) {
+        return new TokenRule(token, true, 1);
+    }
+
+    public static TokenRule required(String token, int userCount) {
+        return new TokenRule(token, true, userCount);
+    }
+
+    public static TokenRule optional(String token) {
+        return new TokenRule(token, false, 1);
+    }
+
+    public static TokenRule optional(String token, int userCount) {
+        return new TokenRule(token, false, userCount);
+    }
+}
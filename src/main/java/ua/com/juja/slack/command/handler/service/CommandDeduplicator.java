@@ -0,0 +1,145 @@
+package ua.com.juja.slack.command.handler.service;
+
+import lombok.EqualsAndHashCode;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Single flight of identical (fromUserSlackUserId, text) commands: concurrent callers share one computation,
+ * its result is reused for reuseWindow after it completes. Failed computations aren't reused.
+ */
+final class CommandDeduplicator {
+    private static final int SWEEP_EVERY_MISSES = 256;
+
+    private final long reuseWindowNanos;
+    private final LongSupplier nanoTime;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final AtomicLong missCount = new AtomicLong();
+
+    CommandDeduplicator(long reuseWindowNanos, LongSupplier nanoTime) {
+        if (reuseWindowNanos < 0) {
+            throw new IllegalArgumentException(String.format("Reuse window [%d ns] can't be negative",
+                    reuseWindowNanos));
+        }
+        this.reuseWindowNanos = reuseWindowNanos;
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * @param create computation of the command with the given text, called by the first of identical callers
+     */
+    CompletableFuture<SlackParsedCommand> get(String fromUserSlackUserId, String text,
+                                              Function<String, CompletableFuture<SlackParsedCommand>> create) {
+        Key key = new Key(fromUserSlackUserId, text);
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (isReusable(entry)) {
+                    hitCount.increment();
+                    return entry.result.thenApply(Function.identity());
+                }
+                entries.remove(key, entry);
+                continue;
+            }
+            Entry created = new Entry();
+            if (entries.putIfAbsent(key, created) != null) {
+                continue;
+            }
+            if (missCount.incrementAndGet() % SWEEP_EVERY_MISSES == 0) {
+                sweep();
+            }
+            CompletableFuture<SlackParsedCommand> computation;
+            try {
+                computation = create.apply(text);
+            } catch (RuntimeException e) {
+                computation = new CompletableFuture<>();
+                computation.completeExceptionally(e);
+            }
+            computation.whenComplete((command, error) -> {
+                if (error != null) {
+                    entries.remove(key, created);
+                    created.result.completeExceptionally(error);
+                } else {
+                    created.completedAt = nanoTime.getAsLong();
+                    created.result.complete(command);
+                }
+            });
+            return created.result.thenApply(Function.identity());
+        }
+    }
+
+    /**
+     * Forgets commands of the changed user or mentioning it. In flight commands are forgotten too, because they
+     * can complete with the user received before the change: their callers still get them, later callers don't.
+     */
+    void invalidate(UserChangeEvent event) {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            CompletableFuture<SlackParsedCommand> result = entry.getValue().result;
+            if (!result.isDone() || result.isCompletedExceptionally()
+                    || event.matchesSlackId(entry.getKey().fromUserSlackUserId) || mentions(result.join(), event)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    DeduplicationStats getStats() {
+        return new DeduplicationStats(hitCount.sum(), missCount.get(), entries.size());
+    }
+
+    private boolean isReusable(Entry entry) {
+        long completedAt = entry.completedAt;
+        return completedAt == Entry.IN_FLIGHT || nanoTime.getAsLong() - completedAt < reuseWindowNanos;
+    }
+
+    private static boolean mentions(SlackParsedCommand command, UserChangeEvent event) {
+        if (event.matches(command.getFromUser())) {
+            return true;
+        }
+        for (UserDTO user : command.getAllUsersInText()) {
+            if (event.matches(user)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sweep() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (!isReusable(iterator.next())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @EqualsAndHashCode
+    private static final class Key {
+        private final String fromUserSlackUserId;
+        private final String text;
+
+        private Key(String fromUserSlackUserId, String text) {
+            this.fromUserSlackUserId = fromUserSlackUserId;
+            this.text = text;
+        }
+    }
+
+    private static final class Entry {
+        private static final long IN_FLIGHT = Long.MIN_VALUE;
+
+        private final CompletableFuture<SlackParsedCommand> result = new CompletableFuture<>();
+        private volatile long completedAt = IN_FLIGHT;
+    }
+}
@@ -0,0 +1,22 @@
+package ua.com.juja.slack.command.handler.service;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Counters of the command deduplication of {@link SlackCommandHandlerService}
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@EqualsAndHashCode
+public final class DeduplicationStats {
+    /** commands which shared the in flight or recently completed command */
+    private final long hitCount;
+    /** commands which were handled */
+    private final long missCount;
+    /** in flight and reusable commands */
+    private final int size;
+}
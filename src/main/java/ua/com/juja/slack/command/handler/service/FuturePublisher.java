@@ -0,0 +1,69 @@
+package ua.com.juja.slack.command.handler.service;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ua.com.juja.slack.command.handler.utils.FutureUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Publisher of one value: every subscriber starts its own future on the first request
+ */
+final class FuturePublisher<T> implements Publisher<T> {
+    private final Supplier<CompletableFuture<T>> future;
+
+    FuturePublisher(Supplier<CompletableFuture<T>> future) {
+        this.future = future;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber can't be null");
+        }
+        subscriber.onSubscribe(new Subscription() {
+            private final AtomicBoolean requested = new AtomicBoolean();
+            private volatile boolean cancelled;
+
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    if (requested.compareAndSet(false, true)) {
+                        subscriber.onError(new IllegalArgumentException(String.format(
+                                "Requested [%d] items, but has to be positive", n)));
+                    }
+                    return;
+                }
+                if (!requested.compareAndSet(false, true)) {
+                    return;
+                }
+                CompletableFuture<T> result;
+                try {
+                    result = future.get();
+                } catch (RuntimeException e) {
+                    subscriber.onError(e);
+                    return;
+                }
+                result.whenComplete((value, error) -> {
+                    if (cancelled) {
+                        return;
+                    }
+                    if (error != null) {
+                        subscriber.onError(FutureUtils.unwrap(error));
+                    } else {
+                        subscriber.onNext(value);
+                        subscriber.onComplete();
+                    }
+                });
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package ua.com.juja.slack.command.handler.service;
+
+import ua.com.juja.slack.command.handler.exception.SlackCommandErrorCode;
+import ua.com.juja.slack.command.handler.exception.UserServiceResponseException;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Users received from the user service for a batch of commands and errors of the failed calls
+ */
+final class ReceivedUsers {
+    private final Map<String, UserDTO> usersBySlackId = new HashMap<>();
+    private final Map<String, RuntimeException> errorsBySlackId = new HashMap<>();
+
+    void add(List<UserDTO> users) {
+        for (UserDTO user : users) {
+            usersBySlackId.put(user.getSlackId(), user);
+        }
+    }
+
+    void addError(Collection<String> slackUserIds, RuntimeException error) {
+        for (String slackUserId : slackUserIds) {
+            errorsBySlackId.put(slackUserId, error);
+        }
+    }
+
+    Map<String, UserDTO> getUsersBySlackId() {
+        return usersBySlackId;
+    }
+
+    /**
+     * @throws RuntimeException the call for one of the slackIds failed with, or UserServiceResponseException
+     *                          if a user wasn't received
+     */
+    void check(Set<String> expectedSlackUserId) {
+        for (String slackUserId : expectedSlackUserId) {
+            if (!usersBySlackId.containsKey(slackUserId)) {
+                RuntimeException error = errorsBySlackId.get(slackUserId);
+                if (error != null) {
+                    throw error;
+                }
+                throw new UserServiceResponseException(SlackCommandErrorCode.USER_NOT_IN_RESPONSE, slackUserId);
+            }
+        }
+    }
+}
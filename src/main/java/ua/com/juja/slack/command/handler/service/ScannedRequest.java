@@ -0,0 +1,48 @@
+package ua.com.juja.slack.command.handler.service;
+
+import ua.com.juja.slack.command.handler.model.SlackCommandRequest;
+import ua.com.juja.slack.command.handler.model.SlackCommandResult;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+
+import java.util.Set;
+
+/**
+ * Request of a batch scanned for slack names, or the error why it can't be handled
+ */
+final class ScannedRequest {
+    private final SlackCommandRequest request;
+    private SlackCommand slackCommand;
+    private RuntimeException error;
+
+    ScannedRequest(SlackCommandRequest request) {
+        this.request = request;
+        try {
+            if (request.getFromUserSlackUserId() == null || request.getText() == null) {
+                throw new IllegalArgumentException(String.format("Error. Request %s doesn't contain " +
+                        "fromUserSlackUserId or text", request));
+            }
+            slackCommand = new SlackCommand(request.getFromUserSlackUserId(), request.getText());
+        } catch (RuntimeException e) {
+            error = e;
+        }
+    }
+
+    void addSlackUserIds(Set<String> allSlackUserId) {
+        if (slackCommand != null) {
+            allSlackUserId.addAll(slackCommand.getAllSlackUserId());
+        }
+    }
+
+    SlackCommandResult toResult(long index, ReceivedUsers users) {
+        if (error != null) {
+            return SlackCommandResult.failure(index, request, error);
+        }
+        try {
+            users.check(slackCommand.getAllSlackUserId());
+            SlackParsedCommand command = SlackCommandConverter.convert(slackCommand, users.getUsersBySlackId());
+            return SlackCommandResult.success(index, request, command);
+        } catch (RuntimeException e) {
+            return SlackCommandResult.failure(index, request, e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ua.com.juja.slack.command.handler.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import ua.com.juja.slack.command.handler.parser.SlackMentionIndex;
+import ua.com.juja.slack.command.handler.parser.SlackMentionScanner;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Command text scanned for slack names, before users are received from the user service
+ */
+@Getter
+@Slf4j
+class SlackCommand {
+    private final String fromUserSlackUserId;
+    private final String text;
+    private final SlackMentionIndex mentionIndex;
+    private final List<String> slackUserIdInText;
+    private final Set<String> allSlackUserId;
+    private final boolean hasDuplicatedSlackUserIdInText;
+
+    SlackCommand(String fromUserSlackUserId, CharSequence text) {
+        this(fromUserSlackUserId, text, SlackMentionScanner.scan(text));
+    }
+
+    /**
+     * @param text is copied if it isn't a String, so the caller can reuse its buffer while the command is converted
+     */
+    SlackCommand(String fromUserSlackUserId, CharSequence text, SlackMentionIndex mentionIndex) {
+        this.fromUserSlackUserId = fromUserSlackUserId;
+        this.text = text.toString();
+        this.mentionIndex = mentionIndex;
+        slackUserIdInText = mentionIndex.getSlackIds();
+        allSlackUserId = new LinkedHashSet<>(slackUserIdInText);
+        hasDuplicatedSlackUserIdInText = allSlackUserId.size() < slackUserIdInText.size();
+        allSlackUserId.add(fromUserSlackUserId);
+        log.debug("Received slack user id: {} from text: {}", slackUserIdInText, text);
+    }
+}
@@ -0,0 +1,226 @@
+package ua.com.juja.slack.command.handler.service;
+
+import lombok.extern.slf4j.Slf4j;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.SlackCommandRequest;
+import ua.com.juja.slack.command.handler.model.SlackCommandResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Handles a lot of commands at once, e.g. replayed from logs.
+ * <p>
+ * {@link #process(Stream)} reads requests in chunks of chunkSize: texts of a chunk are scanned in parallel,
+ * slackIds of the whole chunk are deduplicated and received from the user service in calls of at most
+ * maxSlackIdsPerCall slackIds. Results are produced lazily in the input order, so only one chunk is kept in memory.
+ * <p>
+ * {@link #processAll(List)} splits a batch which is already in memory into chunks of chunkSize and scans and converts
+ * the chunks in parallel on the fork/join pool. slackIds of the whole batch are deduplicated and received from the
+ * user service in calls of at most maxSlackIdsPerCall slackIds, all of them before any request is converted.
+ * <p>
+ * A failed request (or a failed user service call) is reported in its results and doesn't stop the processing.
+ */
+@Slf4j
+public class SlackCommandBatchProcessor {
+
+    public interface ChunkListener {
+        ChunkListener NONE = (firstIndex, requestCount, scanNanos, convertNanos) -> { };
+
+        /**
+         * Called in the input order for every part of the requests which one fork/join task scanned and converted.
+         * In {@link #processAll(List)} a part is a chunk of chunkSize requests, in {@link #process(Iterator)} every
+         * chunk is split into a part per thread of the pool. The user service calls aren't reported.
+         *
+         * @param firstIndex index of the first request of the part in the input
+         */
+        void onChunk(long firstIndex, int requestCount, long scanNanos, long convertNanos);
+    }
+
+    private final UserBySlackUserId userBySlackUserId;
+    private final int chunkSize;
+    private final int maxSlackIdsPerCall;
+    private final ForkJoinPool pool;
+    private ChunkListener chunkListener = ChunkListener.NONE;
+
+    /**
+     * Chunks are processed on the common fork/join pool
+     */
+    public SlackCommandBatchProcessor(UserBySlackUserId userBySlackUserId, int chunkSize, int maxSlackIdsPerCall) {
+        this(userBySlackUserId, chunkSize, maxSlackIdsPerCall, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool its parallelism is the parallelism of the processing
+     */
+    public SlackCommandBatchProcessor(UserBySlackUserId userBySlackUserId, int chunkSize, int maxSlackIdsPerCall,
+                                      ForkJoinPool pool) {
+        if (chunkSize < 1 || maxSlackIdsPerCall < 1) {
+            throw new IllegalArgumentException(String.format("Wrong batch settings: chunkSize [%d], " +
+                    "maxSlackIdsPerCall [%d]", chunkSize, maxSlackIdsPerCall));
+        }
+        this.userBySlackUserId = userBySlackUserId;
+        this.chunkSize = chunkSize;
+        this.maxSlackIdsPerCall = maxSlackIdsPerCall;
+        this.pool = pool;
+    }
+
+    public void setChunkListener(ChunkListener chunkListener) {
+        this.chunkListener = chunkListener;
+    }
+
+    public Stream<SlackCommandResult> process(Stream<SlackCommandRequest> requests) {
+        Iterator<SlackCommandResult> results = process(requests.iterator());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(requests::close);
+    }
+
+    public Iterator<SlackCommandResult> process(Iterator<SlackCommandRequest> requests) {
+        return new Iterator<SlackCommandResult>() {
+            private final Queue<SlackCommandResult> processedChunk = new ArrayDeque<>();
+            private long nextIndex;
+
+            @Override
+            public boolean hasNext() {
+                if (processedChunk.isEmpty() && requests.hasNext()) {
+                    List<SlackCommandRequest> chunk = new ArrayList<>(chunkSize);
+                    while (chunk.size() < chunkSize && requests.hasNext()) {
+                        chunk.add(requests.next());
+                    }
+                    int partSize = (chunk.size() + pool.getParallelism() - 1) / pool.getParallelism();
+                    processedChunk.addAll(process(nextIndex, chunk, partSize));
+                    nextIndex += chunk.size();
+                }
+                return !processedChunk.isEmpty();
+            }
+
+            @Override
+            public SlackCommandResult next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return processedChunk.poll();
+            }
+        };
+    }
+
+    /**
+     * @return results in the order of the requests
+     */
+    public List<SlackCommandResult> processAll(List<SlackCommandRequest> requests) {
+        return process(0, requests, chunkSize);
+    }
+
+    /**
+     * Scans and converts parts of partSize requests in parallel, the user service is called once for all of them
+     */
+    private List<SlackCommandResult> process(long firstIndex, List<SlackCommandRequest> requests, int partSize) {
+        int size = requests.size();
+        if (size == 0) {
+            return new ArrayList<>();
+        }
+        boolean timed = chunkListener != ChunkListener.NONE;
+        int partCount = (size + partSize - 1) / partSize;
+        long[] scanNanos = new long[partCount];
+        long[] convertNanos = new long[partCount];
+
+        ScannedRequest[] scanned = new ScannedRequest[size];
+        pool.invoke(new PartsAction(0, size, partSize, (from, to) -> {
+            long started = timed ? System.nanoTime() : 0;
+            for (int i = from; i < to; i++) {
+                scanned[i] = new ScannedRequest(requests.get(i));
+            }
+            if (timed) {
+                scanNanos[from / partSize] = System.nanoTime() - started;
+            }
+        }));
+
+        Set<String> allSlackUserId = new LinkedHashSet<>();
+        for (ScannedRequest item : scanned) {
+            item.addSlackUserIds(allSlackUserId);
+        }
+        ReceivedUsers users = receiveUsers(allSlackUserId);
+
+        SlackCommandResult[] result = new SlackCommandResult[size];
+        pool.invoke(new PartsAction(0, size, partSize, (from, to) -> {
+            long started = timed ? System.nanoTime() : 0;
+            for (int i = from; i < to; i++) {
+                result[i] = scanned[i].toResult(firstIndex + i, users);
+            }
+            if (timed) {
+                convertNanos[from / partSize] = System.nanoTime() - started;
+            }
+        }));
+
+        if (timed) {
+            for (int part = 0; part < partCount; part++) {
+                int from = part * partSize;
+                chunkListener.onChunk(firstIndex + from, Math.min(partSize, size - from),
+                        scanNanos[part], convertNanos[part]);
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    private ReceivedUsers receiveUsers(Set<String> allSlackUserId) {
+        ReceivedUsers result = new ReceivedUsers();
+        List<String> slackUserIds = new ArrayList<>(allSlackUserId);
+        for (int from = 0; from < slackUserIds.size(); from += maxSlackIdsPerCall) {
+            List<String> part = slackUserIds.subList(from, Math.min(from + maxSlackIdsPerCall, slackUserIds.size()));
+            log.debug("send {} slack names to user service", part.size());
+            try {
+                result.add(userBySlackUserId.findUsersBySlackUserId(new ArrayList<>(part)));
+            } catch (RuntimeException e) {
+                log.warn("User service failed for {} slack names: {}", part.size(), e.getMessage());
+                result.addError(part, e);
+            }
+        }
+        return result;
+    }
+
+    private interface PartConsumer {
+        void accept(int from, int to);
+    }
+
+    /**
+     * Splits [from, to) into parts of partSize (the last one can be smaller), parts start at multiples of partSize
+     */
+    private static final class PartsAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int partSize;
+        private final PartConsumer part;
+
+        private PartsAction(int from, int to, int partSize, PartConsumer part) {
+            this.from = from;
+            this.to = to;
+            this.partSize = partSize;
+            this.part = part;
+        }
+
+        @Override
+        protected void compute() {
+            int parts = (to - from + partSize - 1) / partSize;
+            if (parts <= 1) {
+                part.accept(from, to);
+                return;
+            }
+            int middle = from + parts / 2 * partSize;
+            invokeAll(new PartsAction(from, middle, partSize, part), new PartsAction(middle, to, partSize, part));
+        }
+    }
+}
\ No newline at end of file
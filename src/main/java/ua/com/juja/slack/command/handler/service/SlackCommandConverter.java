@@ -0,0 +1,70 @@
+package ua.com.juja.slack.command.handler.service;
+
+import ua.com.juja.slack.command.handler.exception.SlackCommandErrorCode;
+import ua.com.juja.slack.command.handler.exception.UserServiceResponseException;
+import ua.com.juja.slack.command.handler.metrics.SlackCommandMetrics;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * usersInText contains every mentioned user once, in the order of the first mention in the text.
+ * The from user is in usersInText only if the text mentions it.
+ */
+final class SlackCommandConverter {
+
+    private SlackCommandConverter() {
+    }
+
+    /**
+     * @param usersBySlackId has to contain users for all the slackIds of the command, isn't modified
+     */
+    static SlackParsedCommand convert(SlackCommand slackCommand, Map<String, UserDTO> usersBySlackId) {
+        return convert(slackCommand, usersBySlackId, SlackCommandMetrics.NONE);
+    }
+
+    /**
+     * @param metrics of the created command, records its parse failures
+     */
+    static SlackParsedCommand convert(SlackCommand slackCommand, Map<String, UserDTO> usersBySlackId,
+                                      SlackCommandMetrics metrics) {
+        UserDTO fromUser = usersBySlackId.get(slackCommand.getFromUserSlackUserId());
+        List<String> slackUserIdInText = slackCommand.getSlackUserIdInText();
+        List<UserDTO> usersInText = new ArrayList<>(slackUserIdInText.size());
+        Set<String> added = slackCommand.isHasDuplicatedSlackUserIdInText() ? new HashSet<>() : null;
+        for (String slackUserId : slackUserIdInText) {
+            if (added == null || added.add(slackUserId)) {
+                usersInText.add(usersBySlackId.get(slackUserId));
+            }
+        }
+        return new SlackParsedCommand(fromUser, slackCommand.getText(), usersInText, slackCommand.getMentionIndex(),
+                metrics);
+    }
+
+    static Map<String, UserDTO> checkReceivedUsers(Set<String> expectedSlackUserId, List<UserDTO> receivedUsers){
+
+        if(expectedSlackUserId.size() != receivedUsers.size()){
+            throw new UserServiceResponseException(SlackCommandErrorCode.UNEXPECTED_USER_COUNT,
+                    expectedSlackUserId.size(), receivedUsers.size(), receivedUsers);
+        }
+
+        Map<String, UserDTO> actualSlackUserId = new HashMap<>(receivedUsers.size() * 2);
+        for (UserDTO user : receivedUsers) {
+            actualSlackUserId.put(user.getSlackId(), user);
+        }
+
+        for (String slackUserId : expectedSlackUserId) {
+            if(!actualSlackUserId.containsKey(slackUserId)){
+                throw new UserServiceResponseException(SlackCommandErrorCode.USER_NOT_FOUND, slackUserId,
+                        receivedUsers);
+            }
+        }
+        return actualSlackUserId;
+    }
+}
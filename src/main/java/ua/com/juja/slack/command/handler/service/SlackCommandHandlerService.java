@@ -1,18 +1,43 @@
 package ua.com.juja.slack.command.handler.service;
 
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
 import org.springframework.stereotype.Service;
+import ua.com.juja.slack.command.handler.AsyncUserBySlackUserId;
 import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.exception.ParseSlackCommandException;
+import ua.com.juja.slack.command.handler.form.SlackCommandForm;
+import ua.com.juja.slack.command.handler.form.SlackFormDecoder;
+import ua.com.juja.slack.command.handler.exception.UserServiceResponseException;
+import ua.com.juja.slack.command.handler.metrics.SlackCommandMetrics;
+import ua.com.juja.slack.command.handler.metrics.SlackCommandMetrics.Phase;
+import ua.com.juja.slack.command.handler.model.SlackCommandRequest;
+import ua.com.juja.slack.command.handler.model.SlackCommandResult;
 import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
 import ua.com.juja.slack.command.handler.model.UserDTO;
+import ua.com.juja.slack.command.handler.parser.SlackIdTable;
+import ua.com.juja.slack.command.handler.parser.SlackMention;
+import ua.com.juja.slack.command.handler.parser.SlackMentionIndex;
+import ua.com.juja.slack.command.handler.parser.SlackMentionScanner;
+import ua.com.juja.slack.command.handler.schema.SlackCommandArguments;
+import ua.com.juja.slack.command.handler.schema.SlackCommandSchema;
+import ua.com.juja.slack.command.handler.user.LimitedUserBySlackUserId;
+import ua.com.juja.slack.command.handler.user.UserChangeListener;
+import ua.com.juja.slack.command.handler.utils.FutureUtils;
+import ua.com.juja.slack.command.handler.utils.VirtualThreads;
 
 import javax.inject.Inject;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 /**
  * @author Nikolay Horushko
@@ -20,119 +45,361 @@ import java.util.stream.Collectors;
  */
 @Service
 @Slf4j
-public class SlackCommandHandlerService {
+public class SlackCommandHandlerService implements UserChangeListener {
 
-    private final String escapedSlackUserIdAndName = "<@\\w+\\|([a-zA-z0-9._-]){1,21}>";
-    private UserBySlackUserId userBySlackUserId;
+    private static final long NOT_TIMED = Long.MIN_VALUE;
 
+    private AsyncUserBySlackUserId asyncUserBySlackUserId;
+    private long timeoutNanos;
+    private volatile SlackCommandMetrics metrics = SlackCommandMetrics.NONE;
+    private volatile CommandDeduplicator deduplicator;
+    private volatile SlackIdTable slackIdTable;
+
+    /**
+     * The user service is called on the caller thread without timeout
+     */
     @Inject
     public SlackCommandHandlerService(UserBySlackUserId userBySlackUserId) {
-        this.userBySlackUserId = userBySlackUserId;
+        this(AsyncUserBySlackUserId.fromBlocking(userBySlackUserId, Runnable::run), 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The blocking user service is called on the executor
+     *
+     * @param timeout for the user service call, 0 means without timeout
+     */
+    public SlackCommandHandlerService(UserBySlackUserId userBySlackUserId, Executor executor,
+                                      long timeout, TimeUnit unit) {
+        this(AsyncUserBySlackUserId.fromBlocking(userBySlackUserId, executor), timeout, unit);
+    }
+
+    /**
+     * @param timeout for the user service call, 0 means without timeout
+     */
+    public SlackCommandHandlerService(AsyncUserBySlackUserId asyncUserBySlackUserId, long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException(String.format("Timeout [%d] can't be negative", timeout));
+        }
+        this.asyncUserBySlackUserId = asyncUserBySlackUserId;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Every blocking user service call runs on its own virtual thread when the JVM supports them (Java 21+),
+     * otherwise on a pool of maxConcurrentCalls threads. In both cases at most maxConcurrentCalls calls
+     * are in flight, the others wait for a permit (on virtual threads) or in the pool queue.
+     * <p>
+     * Only the *Async methods, the publishers and the dispatcher free the caller thread. The synchronous
+     * createSlackParsedCommand still blocks its caller until the user service answers.
+     *
+     * @param timeout for the user service call, 0 means without timeout
+     */
+    public static SlackCommandHandlerService withVirtualThreads(UserBySlackUserId userBySlackUserId,
+                                                                int maxConcurrentCalls, long timeout, TimeUnit unit) {
+        ExecutorService executor = VirtualThreads.newExecutor(maxConcurrentCalls, "slack-command-user-service-");
+        // the fallback pool has maxConcurrentCalls threads, so only virtual threads need the permits
+        boolean pooled = executor instanceof ThreadPoolExecutor;
+        log.info("User service calls run on {}", pooled ? String.format("a pool of %d threads", maxConcurrentCalls)
+                : "virtual threads");
+        return new SlackCommandHandlerService(pooled ? userBySlackUserId
+                : new LimitedUserBySlackUserId(userBySlackUserId, maxConcurrentCalls), executor, timeout, unit);
+    }
+
+    public void setMetrics(SlackCommandMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * slackIds of the scanned texts are interned in the table, so long lived commands share them
+     *
+     * @param slackIdTable null disables interning
+     */
+    public void setSlackIdTable(SlackIdTable slackIdTable) {
+        this.slackIdTable = slackIdTable;
+    }
+
+    /**
+     * Identical (fromUserSlackUserId, text) commands, e.g. retried by Slack or submitted twice, share one
+     * parsing and user service call while it is in flight and reuse its SlackParsedCommand for reuseWindow after.
+     * Failed commands aren't reused.
+     *
+     * @param reuseWindow 0 shares only in flight commands
+     */
+    public void enableDeduplication(long reuseWindow, TimeUnit unit) {
+        deduplicator = new CommandDeduplicator(unit.toNanos(reuseWindow), System::nanoTime);
+    }
+
+    /**
+     * Forgets deduplicated commands of the changed user, so they aren't reused with the old user
+     */
+    @Override
+    public void onUserChanged(UserChangeEvent event) {
+        CommandDeduplicator commandDeduplicator = deduplicator;
+        if (commandDeduplicator != null) {
+            commandDeduplicator.invalidate(event);
+        }
+    }
+
+    /**
+     * @return counters of the deduplication or null if it isn't enabled
+     */
+    public DeduplicationStats getDeduplicationStats() {
+        CommandDeduplicator commandDeduplicator = deduplicator;
+        return commandDeduplicator == null ? null : commandDeduplicator.getStats();
     }
 
     public SlackParsedCommand createSlackParsedCommand(String fromUserSlackUserId, String text) {
-        log.debug("Start create slackParsedCommand fromUserSlackUserId: [{}] text: [{}]", fromUserSlackUserId, text);
-        SlackCommand slackCommand = new SlackCommand(fromUserSlackUserId, text);
-        SlackParsedCommand result = new SlackCommandToSlackParsedCommandConverter().convert(slackCommand);
-        log.debug("created SlackParsedCommand [{}]", result.toString());
-        return result;
+        return createSlackParsedCommand(fromUserSlackUserId, (CharSequence) text);
+    }
 
+    /**
+     * The text is scanned in place. A text which isn't a String is copied to a String when the command is
+     * created, not on {@link SlackParsedCommand#getText()}, so the caller can reuse its buffer after the call.
+     */
+    public SlackParsedCommand createSlackParsedCommand(String fromUserSlackUserId, CharSequence text) {
+        return FutureUtils.join(createSlackParsedCommandAsync(fromUserSlackUserId, text));
     }
 
-    @Getter
-    private class SlackCommand {
-        private String fromUserSlackUserId;
-        private String text;
-        private List<String> slackUserIdInText;
-        private Set<String> allSlackUserId;
-        private boolean hasFromUserIdInText;
+    /**
+     * The text is decoded from length bytes of UTF-8 starting at offset, the buffer position isn't changed.
+     * The decoded String is the only copy of the text and doesn't refer to the buffer, so a pooled buffer
+     * can be reused after the call.
+     */
+    public SlackParsedCommand createSlackParsedCommand(String fromUserSlackUserId, ByteBuffer utf8Text,
+                                                       int offset, int length) {
+        return createSlackParsedCommand(fromUserSlackUserId, decodeUtf8(utf8Text, offset, length));
+    }
 
-        public SlackCommand(String fromUserSlackUserId, String text) {
-            this.fromUserSlackUserId = fromUserSlackUserId;
-            this.text = text;
-            slackUserIdInText = receiveSlackUserIdFromText(text);
-            hasFromUserIdInText = slackUserIdInText.contains(fromUserSlackUserId);
-            allSlackUserId = new HashSet<>(slackUserIdInText);
-            allSlackUserId.add(fromUserSlackUserId);
+    /**
+     * The text is decoded like in {@link #createSlackParsedCommand(String, ByteBuffer, int, int)} on the caller
+     * thread, so the buffer can be reused as soon as the call returns
+     */
+    public CompletableFuture<SlackParsedCommand> createSlackParsedCommandAsync(String fromUserSlackUserId,
+                                                                               ByteBuffer utf8Text,
+                                                                               int offset, int length) {
+        return createSlackParsedCommandAsync(fromUserSlackUserId, decodeUtf8(utf8Text, offset, length));
+    }
+
+    /**
+     * The text is parsed on the caller thread, the SlackParsedCommand is created on the thread
+     * which completes the user service call. Fails with TimeoutException if the user service didn't answer in time.
+     */
+    public CompletableFuture<SlackParsedCommand> createSlackParsedCommandAsync(String fromUserSlackUserId,
+                                                                               CharSequence text) {
+        log.debug("Start create slackParsedCommand fromUserSlackUserId: [{}] text: [{}]", fromUserSlackUserId, text);
+        CommandDeduplicator commandDeduplicator = deduplicator;
+        if (commandDeduplicator != null && text != null) {
+            return commandDeduplicator.get(fromUserSlackUserId, text.toString(),
+                    textCopy -> parseAndConvertAsync(fromUserSlackUserId, textCopy));
         }
+        return parseAndConvertAsync(fromUserSlackUserId, text);
+    }
 
-        private List<String> receiveSlackUserIdFromText(String text) {
-            List<String> result = new ArrayList<>();
-            Pattern pattern = Pattern.compile(escapedSlackUserIdAndName);
-            Matcher matcher = pattern.matcher(text);
-            while (matcher.find()) {
-                String slackUserIdAndName = matcher.group();
-                result.add(slackUserIdAndName.substring(slackUserIdAndName.indexOf('@') + 1, slackUserIdAndName.indexOf('|')));
-            }
-            log.debug("Received slack user id: {} from text:", result.toString(), text);
-            return result;
+    /**
+     * The command from the form decoded by {@link SlackFormDecoder}: the text isn't scanned again
+     */
+    public SlackParsedCommand createSlackParsedCommand(SlackCommandForm form) {
+        return FutureUtils.join(createSlackParsedCommandAsync(form));
+    }
+
+    public CompletableFuture<SlackParsedCommand> createSlackParsedCommandAsync(SlackCommandForm form) {
+        if (deduplicator != null || form.getText() == null) {
+            return createSlackParsedCommandAsync(form.getUserId(), form.getText());
         }
+        log.debug("Start create slackParsedCommand from form [{}]", form);
+        long started = startTimer();
+        SlackCommand slackCommand = new SlackCommand(form.getUserId(), form.getText(), form.getMentionIndex());
+        stopTimer(Phase.PARSE, started);
+        return convertAsync(slackCommand, started);
     }
 
-    private class SlackCommandToSlackParsedCommandConverter {
+    private CompletableFuture<SlackParsedCommand> parseAndConvertAsync(String fromUserSlackUserId,
+                                                                       CharSequence text) {
+        long started = startTimer();
+        SlackCommand slackCommand = scan(fromUserSlackUserId, text);
+        stopTimer(Phase.PARSE, started);
+        return convertAsync(slackCommand, started);
+    }
 
-        private SlackParsedCommand convert(SlackCommand slackCommand) {
-            UserDTO fromUser;
-            List<UserDTO> usersInText;
+    /**
+     * Rejects the text which doesn't match the schema before the user service is called
+     *
+     * @throws ParseSlackCommandException if the text doesn't match the schema
+     */
+    public SlackParsedCommand createSlackParsedCommand(String fromUserSlackUserId, CharSequence text,
+                                                       SlackCommandSchema schema) {
+        return FutureUtils.join(createSlackParsedCommandAsync(fromUserSlackUserId, text, schema));
+    }
 
-            if (slackCommand.isHasFromUserIdInText()) {
-                usersInText = receiveUsersBySlackUserId(slackCommand.getAllSlackUserId());
-                sortUsersByOrderInText(usersInText, slackCommand.getSlackUserIdInText());
-                fromUser = getFromUser(usersInText, slackCommand.getFromUserSlackUserId());
-                return new SlackParsedCommand(fromUser, slackCommand.getText(), usersInText);
-            } else {
-                List<UserDTO> allUsers = receiveUsersBySlackUserId(slackCommand.getAllSlackUserId());
-                fromUser = getFromUser(allUsers, slackCommand.getFromUserSlackUserId());
-                usersInText = deleteFromUser(allUsers, slackCommand.getFromUserSlackUserId());
-                sortUsersByOrderInText(usersInText, slackCommand.getSlackUserIdInText());
-                return new SlackParsedCommand(fromUser, slackCommand.getText(), usersInText);
-            }
+    public CompletableFuture<SlackParsedCommand> createSlackParsedCommandAsync(String fromUserSlackUserId,
+                                                                               CharSequence text,
+                                                                               SlackCommandSchema schema) {
+        log.debug("Start create slackParsedCommand fromUserSlackUserId: [{}] text: [{}]", fromUserSlackUserId, text);
+        long started = startTimer();
+        SlackCommand slackCommand = scan(fromUserSlackUserId, text);
+        try {
+            schema.validate(text, slackCommand.getMentionIndex());
+        } catch (ParseSlackCommandException e) {
+            metrics.recordFailure(failureReason(e));
+            return failed(e);
+        } finally {
+            stopTimer(Phase.PARSE, started);
         }
+        return convertValidatedAsync(slackCommand, text, started);
+    }
 
-        private List<UserDTO> receiveUsersBySlackUserId(Set<String> allSlackUserId) {
-
-            log.debug("send slack names: {} to user service", allSlackUserId);
-            List<UserDTO> result = userBySlackUserId.findUsersBySlackUserId(new ArrayList<>(allSlackUserId));
-            checkReceivedUsers(allSlackUserId, result);
+    /**
+     * Validates the text against the schema like {@link #createSlackParsedCommand(String, CharSequence,
+     * SlackCommandSchema)} and calls the handler on the executor with the users bound to the tokens found
+     * by that validation, so the schema isn't applied to the text again
+     */
+    public <T> CompletableFuture<T> handleAsync(String fromUserSlackUserId, CharSequence text,
+                                                SlackCommandSchema schema,
+                                                BiFunction<SlackParsedCommand, SlackCommandArguments, T> handler,
+                                                Executor executor) {
+        log.debug("Start handle command fromUserSlackUserId: [{}] text: [{}]", fromUserSlackUserId, text);
+        long started = startTimer();
+        SlackCommand slackCommand = scan(fromUserSlackUserId, text);
+        Map<String, List<SlackMention>> mentionsByToken;
+        try {
+            mentionsByToken = schema.validate(text, slackCommand.getMentionIndex());
+        } catch (ParseSlackCommandException e) {
+            metrics.recordFailure(failureReason(e));
+            return failed(e);
+        } finally {
+            stopTimer(Phase.PARSE, started);
+        }
+        return convertValidatedAsync(slackCommand, text, started).thenApplyAsync(
+                command -> handler.apply(command, schema.apply(command, mentionsByToken)), executor);
+    }
 
-            return result;
+    private CompletableFuture<SlackParsedCommand> convertValidatedAsync(SlackCommand slackCommand, CharSequence text,
+                                                                        long started) {
+        String fromUserSlackUserId = slackCommand.getFromUserSlackUserId();
+        CommandDeduplicator commandDeduplicator = deduplicator;
+        if (commandDeduplicator != null) {
+            // the shared command is built from the copy, the mentions are at the same positions in it
+            SlackMentionIndex mentionIndex = slackCommand.getMentionIndex();
+            return commandDeduplicator.get(fromUserSlackUserId, text.toString(), textCopy -> convertAsync(
+                    new SlackCommand(fromUserSlackUserId, textCopy, mentionIndex), started));
         }
+        return convertAsync(slackCommand, started);
+    }
 
-        private void checkReceivedUsers(Set<String> expectedSlackUserId, List<UserDTO> receivedUsers){
+    /**
+     * Cold publisher of the command: the text is parsed and the user service is called on the first request
+     * of every subscriber. The user service has to be non blocking to serve commands on event loop threads.
+     */
+    public Publisher<SlackParsedCommand> createSlackParsedCommandPublisher(String fromUserSlackUserId,
+                                                                         CharSequence text) {
+        return new FuturePublisher<>(() -> createSlackParsedCommandAsync(fromUserSlackUserId, text));
+    }
 
-            if(expectedSlackUserId.size() != receivedUsers.size()){
-                throw new IllegalArgumentException(String.format("Error. Sent [%d] slackUsersId to UserService, " +
-                        "but received [%d] users [%s]", expectedSlackUserId.size(), receivedUsers.size(),
-                        receivedUsers.toString()));
-            }
+    /**
+     * Results of the requests in their order. The subscriber demand is passed to the requests publisher,
+     * at most maxBatchSize requests at once; slackIds of the requests received while the user service call
+     * is in flight are passed to the user service by one next call, which may split them itself (e.g.
+     * {@link ua.com.juja.slack.command.handler.user.HttpUserBySlackUserId} sends at most maxSlackIdsPerCall
+     * slackIds per request). A failed request is reported in its result.
+     */
+    public Publisher<SlackCommandResult> process(Publisher<SlackCommandRequest> requests, int maxBatchSize) {
+        return new SlackCommandPublisher(requests, this::receiveUsersBySlackUserId, maxBatchSize);
+    }
+
+    private static String decodeUtf8(ByteBuffer utf8Text, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > utf8Text.limit() - length) {
+            throw new IndexOutOfBoundsException(String.format("Range offset [%d] length [%d] is out of the buffer " +
+                    "limit [%d]", offset, length, utf8Text.limit()));
+        }
+        if (utf8Text.hasArray()) {
+            return new String(utf8Text.array(), utf8Text.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        ByteBuffer range = utf8Text.duplicate();
+        range.limit(offset + length).position(offset);
+        return StandardCharsets.UTF_8.decode(range).toString();
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(error);
+        return result;
+    }
 
-            Set<String> actualSlackUserId = receivedUsers.stream()
-                    .map(userData -> userData.getSlackId())
-                    .collect(Collectors.toSet());
+    private SlackCommand scan(String fromUserSlackUserId, CharSequence text) {
+        return new SlackCommand(fromUserSlackUserId, text, SlackMentionScanner.scan(text, slackIdTable));
+    }
 
-            for (String slackUserId : expectedSlackUserId) {
-                if(!actualSlackUserId.contains(slackUserId)){
-                    throw new IllegalArgumentException(String.format("Error. User for slackUserId: [%s] didn't find " +
-                            "in the List of Users: %s", slackUserId, receivedUsers.toString()));
+    private CompletableFuture<SlackParsedCommand> convertAsync(SlackCommand slackCommand, long started) {
+        metrics.recordMentionCount(slackCommand.getMentionIndex().size());
+        CompletableFuture<SlackParsedCommand> result = receiveUsersBySlackUserId(slackCommand.getAllSlackUserId())
+                .thenApply(receivedUsers -> {
+                    SlackParsedCommand command = convert(slackCommand, receivedUsers);
+                    log.debug("created SlackParsedCommand [{}]", command);
+                    return command;
+                });
+        if (metrics != SlackCommandMetrics.NONE) {
+            result.whenComplete((command, error) -> {
+                stopTimer(Phase.TOTAL, started);
+                if (error != null) {
+                    metrics.recordFailure(failureReason(FutureUtils.unwrap(error)));
                 }
-            }
+            });
         }
+        return result;
+    }
 
-        private UserDTO getFromUser(List<UserDTO> usersInText, String fromUserSlackUserId) {
-            return usersInText.stream()
-                    .filter(user -> user.getSlackId().equals(fromUserSlackUserId))
-                    .findFirst()
-                    .get();
+    private CompletableFuture<List<UserDTO>> receiveUsersBySlackUserId(Set<String> allSlackUserId) {
+        log.debug("send slack names: {} to user service", allSlackUserId);
+        metrics.recordUserServiceBatch(allSlackUserId.size());
+        long started = startTimer();
+        CompletableFuture<List<UserDTO>> result;
+        try {
+            result = asyncUserBySlackUserId.findUsersBySlackUserIdAsync(new ArrayList<>(allSlackUserId));
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+        }
+        if (timeoutNanos > 0) {
+            result = FutureUtils.withTimeout(result, timeoutNanos, TimeUnit.NANOSECONDS);
         }
+        if (started != NOT_TIMED) {
+            result = result.whenComplete((users, error) -> stopTimer(Phase.USER_SERVICE, started));
+        }
+        return result;
+    }
+
+    private SlackParsedCommand convert(SlackCommand slackCommand, List<UserDTO> receivedUsers) {
+        long started = startTimer();
+        Map<String, UserDTO> usersBySlackId = SlackCommandConverter.checkReceivedUsers(
+                slackCommand.getAllSlackUserId(), receivedUsers);
+        stopTimer(Phase.CHECK_RECEIVED_USERS, started);
 
-        private List<UserDTO> deleteFromUser(List<UserDTO> allUsersList, String fromUserSlackUserId) {
-            return allUsersList.stream()
-                    .filter(user -> !user.getSlackId().equals(fromUserSlackUserId))
-                    .collect(Collectors.toList());
+        started = startTimer();
+        SlackParsedCommand result = SlackCommandConverter.convert(slackCommand, usersBySlackId, metrics);
+        stopTimer(Phase.SORT, started);
+        return result;
+    }
+
+    private long startTimer() {
+        return metrics == SlackCommandMetrics.NONE ? NOT_TIMED : System.nanoTime();
+    }
+
+    private void stopTimer(Phase phase, long started) {
+        if (started != NOT_TIMED) {
+            metrics.recordPhase(phase, System.nanoTime() - started);
         }
+    }
 
-        private void sortUsersByOrderInText(List<UserDTO> usersInText, List<String> slackUserIdInText) {
-            usersInText.sort(Comparator.comparingInt(user -> slackUserIdInText.indexOf(user.getSlackId())));
+    /**
+     * @return error code of the failure or simple class name of the unexpected exception
+     */
+    private static String failureReason(Throwable error) {
+        if (error instanceof ParseSlackCommandException) {
+            return ((ParseSlackCommandException) error).getErrorCode().name();
+        }
+        if (error instanceof UserServiceResponseException) {
+            return ((UserServiceResponseException) error).getErrorCode().name();
         }
+        return error.getClass().getSimpleName();
     }
 }
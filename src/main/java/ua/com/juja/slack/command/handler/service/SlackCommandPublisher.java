@@ -0,0 +1,243 @@
+package ua.com.juja.slack.command.handler.service;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ua.com.juja.slack.command.handler.model.SlackCommandRequest;
+import ua.com.juja.slack.command.handler.model.SlackCommandResult;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+import ua.com.juja.slack.command.handler.utils.FutureUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Results of the requests of the upstream publisher, in the order of the requests.
+ * <p>
+ * At most maxBatchSize requests (and not more than the subscriber demanded) are requested from the upstream.
+ * One user service call is in flight at once: requests which arrive while it is running are scanned and sent
+ * to the user service together by the next call. Nothing blocks, the results are emitted on the thread
+ * which completes the user service call or which requests them.
+ */
+final class SlackCommandPublisher implements Publisher<SlackCommandResult> {
+    private final Publisher<SlackCommandRequest> requests;
+    private final Function<Set<String>, CompletableFuture<List<UserDTO>>> userService;
+    private final int maxBatchSize;
+
+    SlackCommandPublisher(Publisher<SlackCommandRequest> requests,
+                          Function<Set<String>, CompletableFuture<List<UserDTO>>> userService, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException(String.format("Wrong maxBatchSize [%d]", maxBatchSize));
+        }
+        this.requests = requests;
+        this.userService = userService;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super SlackCommandResult> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber can't be null");
+        }
+        BatchingSubscription subscription = new BatchingSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        requests.subscribe(subscription);
+    }
+
+    private final class BatchingSubscription implements Subscription, Subscriber<SlackCommandRequest> {
+        private final Subscriber<? super SlackCommandResult> downstream;
+        private final Queue<SlackCommandRequest> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<SlackCommandResult> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicLong requested = new AtomicLong();
+        // requests asked from the upstream and not received yet
+        private final AtomicLong upstreamDemand = new AtomicLong();
+        // received from the upstream and not emitted yet
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile Subscription upstream;
+        private volatile boolean inFlight;
+        private volatile boolean upstreamDone;
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private boolean terminated;
+        private long nextIndex;
+
+        private BatchingSubscription(Subscriber<? super SlackCommandResult> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            if (upstream != null || cancelled) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            drain();
+        }
+
+        @Override
+        public void onNext(SlackCommandRequest request) {
+            upstreamDemand.decrementAndGet();
+            buffered.incrementAndGet();
+            pending.offer(request);
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                onError(new IllegalArgumentException(String.format("Requested [%d] items, but has to be positive",
+                        n)));
+                cancelUpstream();
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!requested.compareAndSet(current, next));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelUpstream();
+            drain();
+        }
+
+        private void cancelUpstream() {
+            Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (terminated) {
+                    return;
+                }
+                if (cancelled) {
+                    pending.clear();
+                    ready.clear();
+                    terminated = true;
+                    return;
+                }
+                emitReady();
+                if (error != null) {
+                    terminated = true;
+                    downstream.onError(error);
+                    return;
+                }
+                if (upstreamDone && !inFlight && pending.isEmpty() && ready.isEmpty()) {
+                    terminated = true;
+                    downstream.onComplete();
+                    return;
+                }
+                if (!inFlight && !pending.isEmpty()) {
+                    startBatch();
+                }
+                requestUpstream();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emitReady() {
+            long demand = requested.get();
+            long emitted = 0;
+            while (emitted != demand && !cancelled) {
+                SlackCommandResult result = ready.poll();
+                if (result == null) {
+                    break;
+                }
+                downstream.onNext(result);
+                emitted++;
+            }
+            if (emitted > 0) {
+                buffered.addAndGet((int) -emitted);
+                if (demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+            }
+        }
+
+        private void requestUpstream() {
+            Subscription subscription = upstream;
+            if (subscription == null || upstreamDone) {
+                return;
+            }
+            long window = Math.min(requested.get(), maxBatchSize);
+            long missing = window - buffered.get() - upstreamDemand.get();
+            if (missing > 0) {
+                upstreamDemand.addAndGet(missing);
+                subscription.request(missing);
+            }
+        }
+
+        private void startBatch() {
+            List<ScannedRequest> batch = new ArrayList<>();
+            Set<String> allSlackUserId = new LinkedHashSet<>();
+            SlackCommandRequest request;
+            while (batch.size() < maxBatchSize && (request = pending.poll()) != null) {
+                ScannedRequest scanned = new ScannedRequest(request);
+                scanned.addSlackUserIds(allSlackUserId);
+                batch.add(scanned);
+            }
+            inFlight = true;
+            CompletableFuture<List<UserDTO>> users;
+            if (allSlackUserId.isEmpty()) {
+                users = CompletableFuture.completedFuture(new ArrayList<>());
+            } else {
+                try {
+                    users = userService.apply(allSlackUserId);
+                } catch (RuntimeException e) {
+                    users = new CompletableFuture<>();
+                    users.completeExceptionally(e);
+                }
+            }
+            long firstIndex = nextIndex;
+            nextIndex += batch.size();
+            users.whenComplete((received, failure) -> {
+                ReceivedUsers receivedUsers = new ReceivedUsers();
+                if (failure != null) {
+                    receivedUsers.addError(allSlackUserId, FutureUtils.unwrap(failure));
+                } else {
+                    receivedUsers.add(received);
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    ready.offer(batch.get(i).toResult(firstIndex + i, receivedUsers));
+                }
+                inFlight = false;
+                drain();
+            });
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ua.com.juja.slack.command.handler.user;
+
+import lombok.extern.slf4j.Slf4j;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+import ua.com.juja.slack.command.handler.utils.FutureUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces slackIds of concurrent callers into one deduplicated call of the delegate.
+ * <p>
+ * The first caller opens a batch and waits until the window elapses or the batch reaches maxBatchSize
+ * distinct slackIds, then calls the delegate on its own thread. Other callers join the open batch
+ * and receive their part of the result.
+ */
+@Slf4j
+public class BatchingUserBySlackUserId implements UserBySlackUserId {
+
+    public interface BatchListener {
+        BatchListener NONE = (callers, requestedIds, distinctIds) -> { };
+
+        /**
+         * @param callers      count of findUsersBySlackUserId calls served by the batch
+         * @param requestedIds sum of slackIds requested by the callers
+         * @param distinctIds  slackIds sent to the delegate, requestedIds - distinctIds were coalesced
+         */
+        void onBatch(int callers, int requestedIds, int distinctIds);
+    }
+
+    private final UserBySlackUserId userBySlackUserId;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BatchListener batchListener;
+    private final Object lock = new Object();
+    private Batch openBatch;
+
+    public BatchingUserBySlackUserId(UserBySlackUserId userBySlackUserId, long window, TimeUnit unit,
+                                     int maxBatchSize) {
+        this(userBySlackUserId, window, unit, maxBatchSize, BatchListener.NONE);
+    }
+
+    public BatchingUserBySlackUserId(UserBySlackUserId userBySlackUserId, long window, TimeUnit unit,
+                                     int maxBatchSize, BatchListener batchListener) {
+        if (window < 0 || maxBatchSize < 1) {
+            throw new IllegalArgumentException(String.format("Wrong batch settings: window [%d], " +
+                    "maxBatchSize [%d]", window, maxBatchSize));
+        }
+        this.userBySlackUserId = userBySlackUserId;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+        this.batchListener = batchListener;
+    }
+
+    @Override
+    public List<UserDTO> findUsersBySlackUserId(List<String> slackNames) {
+        Set<String> requested = new LinkedHashSet<>(slackNames);
+        if (requested.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Batch batch;
+        boolean leader;
+        synchronized (lock) {
+            leader = openBatch == null;
+            if (leader) {
+                openBatch = new Batch();
+            }
+            batch = openBatch;
+            batch.add(requested);
+            if (batch.slackIds.size() >= maxBatchSize) {
+                openBatch = null;
+                batch.full.countDown();
+            }
+        }
+        if (leader) {
+            batch.awaitWindow(windowNanos);
+            synchronized (lock) {
+                if (openBatch == batch) {
+                    openBatch = null;
+                }
+            }
+            batch.execute();
+        }
+        return batch.resultFor(requested);
+    }
+
+    private final class Batch {
+        private final Set<String> slackIds = new LinkedHashSet<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+        private final CompletableFuture<Map<String, UserDTO>> result = new CompletableFuture<>();
+        private int callers;
+        private int requestedIds;
+
+        // guarded by lock until the batch is closed
+        private void add(Set<String> requested) {
+            callers++;
+            requestedIds += requested.size();
+            slackIds.addAll(requested);
+        }
+
+        private void awaitWindow(long nanos) {
+            try {
+                full.await(nanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void execute() {
+            List<String> batchSlackIds;
+            int batchCallers;
+            int batchRequestedIds;
+            synchronized (lock) {
+                batchSlackIds = new ArrayList<>(slackIds);
+                batchCallers = callers;
+                batchRequestedIds = requestedIds;
+            }
+            log.debug("send batch of slack ids: {} for {} callers to user service", batchSlackIds, batchCallers);
+            try {
+                notifyListener(batchCallers, batchRequestedIds, batchSlackIds.size());
+                List<UserDTO> users = userBySlackUserId.findUsersBySlackUserId(batchSlackIds);
+                Map<String, UserDTO> usersBySlackId = new HashMap<>();
+                for (UserDTO user : users) {
+                    usersBySlackId.put(user.getSlackId(), user);
+                }
+                result.complete(usersBySlackId);
+            } catch (Throwable e) {
+                // followers wait for the result without timeout, so it is completed on every exit
+                result.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * A failing listener doesn't fail the batch
+         */
+        private void notifyListener(int batchCallers, int batchRequestedIds, int distinctIds) {
+            try {
+                batchListener.onBatch(batchCallers, batchRequestedIds, distinctIds);
+            } catch (RuntimeException e) {
+                log.warn("Batch listener failed: {}", e.toString());
+            }
+        }
+
+        private List<UserDTO> resultFor(Set<String> requested) {
+            Map<String, UserDTO> usersBySlackId = FutureUtils.join(result);
+            List<UserDTO> users = new ArrayList<>(requested.size());
+            for (String slackId : requested) {
+                UserDTO user = usersBySlackId.get(slackId);
+                if (user != null) {
+                    users.add(user);
+                }
+            }
+            return users;
+        }
+    }
+}
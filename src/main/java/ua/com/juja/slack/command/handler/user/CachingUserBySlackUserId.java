@@ -0,0 +1,286 @@
+package ua.com.juja.slack.command.handler.user;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Size bounded LRU cache of users in front of the delegate. Only slackIds which are not cached
+ * (or expired) are sent to the delegate.
+ * <p>
+ * With negative caching enabled slackIds which the delegate didn't return are remembered for negativeTtl,
+ * so the next command with such slackId fails in checkReceivedUsers without calling the user service.
+ * <p>
+ * After restart the cache can be warmed up from a {@link UserSnapshot} with {@link #preload(Collection)}.
+ * <p>
+ * Changed users are evicted by {@link #onUserChanged(UserChangeEvent)} (see {@link UserInvalidationFeed}).
+ * A user loaded by a delegate call which overlapped its invalidation isn't cached, so a slow call can't put
+ * the old user back after the event. Other users of the call are cached as usual.
+ */
+@Slf4j
+public class CachingUserBySlackUserId implements UserBySlackUserId, UserChangeListener {
+
+    private static final int MAX_INVALIDATIONS = 1024;
+
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    @EqualsAndHashCode
+    public static final class CacheStats {
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final int size;
+    }
+
+    private final UserBySlackUserId userBySlackUserId;
+    private final int maximumSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier nanoTime;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    // guarded by entries
+    private final UserInvalidations invalidations = new UserInvalidations(MAX_INVALIDATIONS);
+
+    public CachingUserBySlackUserId(UserBySlackUserId userBySlackUserId, int maximumSize, long ttl, TimeUnit unit) {
+        this(userBySlackUserId, maximumSize, ttl, 0, unit);
+    }
+
+    /**
+     * @param negativeTtl how long unknown slackIds are remembered, 0 disables negative caching
+     */
+    public CachingUserBySlackUserId(UserBySlackUserId userBySlackUserId, int maximumSize, long ttl,
+                                    long negativeTtl, TimeUnit unit) {
+        this(userBySlackUserId, maximumSize, unit.toNanos(ttl), unit.toNanos(negativeTtl), System::nanoTime);
+    }
+
+    CachingUserBySlackUserId(UserBySlackUserId userBySlackUserId, int maximumSize, long ttlNanos,
+                             long negativeTtlNanos, LongSupplier nanoTime) {
+        if (maximumSize < 1 || ttlNanos <= 0 || negativeTtlNanos < 0) {
+            throw new IllegalArgumentException(String.format("Wrong cache settings: maximumSize [%d], " +
+                    "ttl [%d ns], negativeTtl [%d ns]", maximumSize, ttlNanos, negativeTtlNanos));
+        }
+        this.userBySlackUserId = userBySlackUserId;
+        this.maximumSize = maximumSize;
+        this.ttlNanos = ttlNanos;
+        this.negativeTtlNanos = negativeTtlNanos;
+        this.nanoTime = nanoTime;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > CachingUserBySlackUserId.this.maximumSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public List<UserDTO> findUsersBySlackUserId(List<String> slackNames) {
+        Set<String> requested = new LinkedHashSet<>(slackNames);
+        Map<String, UserDTO> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        long now = nanoTime.getAsLong();
+        long loadStartedAt;
+        synchronized (entries) {
+            loadStartedAt = invalidations.start();
+            for (String slackId : requested) {
+                Entry entry = entries.get(slackId);
+                if (entry != null && entry.expiresAt - now > 0) {
+                    if (entry.user != null) {
+                        found.put(slackId, entry.user);
+                    }
+                } else {
+                    if (entry != null) {
+                        entries.remove(slackId);
+                    }
+                    misses.add(slackId);
+                }
+            }
+        }
+        hitCount.addAndGet(requested.size() - misses.size());
+        missCount.addAndGet(misses.size());
+
+        if (!misses.isEmpty()) {
+            log.debug("send not cached slack ids: {} to user service", misses);
+            List<UserDTO> loaded = userBySlackUserId.findUsersBySlackUserId(misses);
+            long loadedAt = nanoTime.getAsLong();
+            synchronized (entries) {
+                for (UserDTO user : loaded) {
+                    if (!invalidations.isChangedSince(loadStartedAt, user)) {
+                        entries.put(user.getSlackId(), new Entry(user, loadedAt + ttlNanos, false));
+                    }
+                    found.put(user.getSlackId(), user);
+                }
+                if (negativeTtlNanos > 0) {
+                    for (String slackId : misses) {
+                        if (!found.containsKey(slackId)
+                                && !invalidations.isChangedSince(loadStartedAt, slackId, null)) {
+                            entries.put(slackId, new Entry(null, loadedAt + negativeTtlNanos, false));
+                        }
+                    }
+                }
+            }
+        }
+
+        List<UserDTO> result = new ArrayList<>(found.size());
+        for (String slackId : requested) {
+            UserDTO user = found.get(slackId);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Puts users, e.g. read from a {@link UserSnapshot}, into the cache for ttl without calling the delegate.
+     * They are marked stale until {@link #refreshStale(int)} reloads them.
+     */
+    public void preload(Collection<UserDTO> users) {
+        long expiresAt = nanoTime.getAsLong() + ttlNanos;
+        synchronized (entries) {
+            for (UserDTO user : users) {
+                if (user.getSlackId() != null) {
+                    entries.put(user.getSlackId(), new Entry(user, expiresAt, true));
+                }
+            }
+        }
+        log.info("Preloaded {} users", users.size());
+    }
+
+    /**
+     * @return users which are cached and not expired, e.g. to write a {@link UserSnapshot}
+     */
+    public List<UserDTO> getUsers() {
+        long now = nanoTime.getAsLong();
+        List<UserDTO> result = new ArrayList<>();
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                if (entry.user != null && entry.expiresAt - now > 0) {
+                    result.add(entry.user);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reloads preloaded users from the delegate in calls of at most maxSlackIdsPerCall slackIds.
+     * A user which the delegate didn't return is removed from the cache.
+     *
+     * @return count of reloaded slackIds
+     */
+    public int refreshStale(int maxSlackIdsPerCall) {
+        List<String> stale = new ArrayList<>();
+        synchronized (entries) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (entry.getValue().stale) {
+                    stale.add(entry.getKey());
+                }
+            }
+        }
+        for (int from = 0; from < stale.size(); from += maxSlackIdsPerCall) {
+            List<String> part = stale.subList(from, Math.min(from + maxSlackIdsPerCall, stale.size()));
+            long loadStartedAt;
+            synchronized (entries) {
+                loadStartedAt = invalidations.start();
+            }
+            List<UserDTO> loaded = userBySlackUserId.findUsersBySlackUserId(new ArrayList<>(part));
+            long loadedAt = nanoTime.getAsLong();
+            synchronized (entries) {
+                for (String slackId : part) {
+                    Entry entry = entries.get(slackId);
+                    if (entry != null && entry.stale) {
+                        entries.remove(slackId);
+                    }
+                }
+                for (UserDTO user : loaded) {
+                    if (!invalidations.isChangedSince(loadStartedAt, user)) {
+                        entries.put(user.getSlackId(), new Entry(user, loadedAt + ttlNanos, false));
+                    }
+                }
+            }
+        }
+        log.debug("Refreshed {} stale users", stale.size());
+        return stale.size();
+    }
+
+    /**
+     * {@link #refreshStale(int)} on the executor, so the preloaded cache serves commands while it is refreshed
+     */
+    public CompletableFuture<Integer> refreshStaleAsync(Executor executor, int maxSlackIdsPerCall) {
+        return CompletableFuture.supplyAsync(() -> refreshStale(maxSlackIdsPerCall), executor);
+    }
+
+    public void invalidate(String slackId) {
+        synchronized (entries) {
+            invalidations.invalidateSlackId(slackId);
+            entries.remove(slackId);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            invalidations.invalidateAll();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Evicts the user by its slackId and, if the event has uuid, every cached slackId of the user with the uuid
+     * (cached users are scanned, so the uuid events are slower)
+     */
+    @Override
+    public void onUserChanged(UserChangeEvent event) {
+        synchronized (entries) {
+            invalidations.invalidate(event);
+            if (event.getSlackId() != null) {
+                entries.remove(event.getSlackId());
+            }
+            if (event.getUuid() != null) {
+                entries.values().removeIf(entry -> event.matches(entry.user));
+            }
+        }
+    }
+
+    public CacheStats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(hitCount.get(), missCount.get(), evictionCount.get(), size);
+    }
+
+    // user == null marks a slackId unknown to the user service, stale marks a preloaded user
+    @AllArgsConstructor
+    private static final class Entry {
+        private final UserDTO user;
+        private final long expiresAt;
+        private final boolean stale;
+    }
+}
@@ -0,0 +1,152 @@
+package ua.com.juja.slack.command.handler.user;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.exception.UserServiceUnavailableException;
+import ua.com.juja.slack.command.handler.json.SlackCommandJsonCodec;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Receives users from the user service over HTTP.
+ * <p>
+ * Every call posts {@code {"slackIds":[...]}} with at most maxSlackIdsPerCall slackIds to the url, a longer list is
+ * sent in several requests. The answer is a JSON array of users (gzip is accepted) which is parsed while it is read.
+ * <p>
+ * Connections are kept alive and reused by the JDK connection pool: the pool size per host is set by the
+ * {@code http.maxConnections} system property (5 by default). Bodies, including error bodies, are always read to
+ * the end, so a connection goes back to the pool after every request.
+ * <p>
+ * Failures (timeouts, connection errors, not 2xx statuses, wrong answers) are thrown as
+ * {@link UserServiceUnavailableException}.
+ * <p>
+ * readTimeoutMillis limits every read, not the whole call: a call of n chunks can take about n * readTimeout
+ * and a slowly trickling answer even longer. Wrap it in {@link ResilientUserBySlackUserId} for an overall deadline.
+ */
+@Slf4j
+public class HttpUserBySlackUserId implements UserBySlackUserId {
+
+    private static final String SLACK_IDS = "slackIds";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final URL url;
+    private final int maxSlackIdsPerCall;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public HttpUserBySlackUserId(URL url, int maxSlackIdsPerCall, int connectTimeoutMillis, int readTimeoutMillis) {
+        if (maxSlackIdsPerCall < 1 || connectTimeoutMillis < 0 || readTimeoutMillis < 0) {
+            throw new IllegalArgumentException(String.format("Wrong http settings: maxSlackIdsPerCall [%d], " +
+                    "connectTimeoutMillis [%d], readTimeoutMillis [%d]", maxSlackIdsPerCall, connectTimeoutMillis,
+                    readTimeoutMillis));
+        }
+        this.url = url;
+        this.maxSlackIdsPerCall = maxSlackIdsPerCall;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public List<UserDTO> findUsersBySlackUserId(List<String> slackNames) {
+        List<UserDTO> result = new ArrayList<>(slackNames.size());
+        for (int from = 0; from < slackNames.size(); from += maxSlackIdsPerCall) {
+            List<String> part = slackNames.subList(from, Math.min(from + maxSlackIdsPerCall, slackNames.size()));
+            log.debug("send {} slack ids to user service {}", part.size(), url);
+            try {
+                post(part, result);
+            } catch (IOException e) {
+                throw new UserServiceUnavailableException(String.format("User service %s failed for %d slack ids: %s",
+                        url, part.size(), e), e);
+            }
+        }
+        return result;
+    }
+
+    private void post(List<String> slackIds, List<UserDTO> result) throws IOException {
+        byte[] body = writeRequest(slackIds);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setUseCaches(false);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+
+        int status = connection.getResponseCode();
+        if (status < 200 || status >= 300) {
+            try (InputStream error = connection.getErrorStream()) {
+                drain(error);
+            }
+            throw new IOException(String.format("Unexpected response status [%d]", status));
+        }
+        boolean gzip = "gzip".equalsIgnoreCase(connection.getContentEncoding());
+        // the gzip stream is closed too, so its native inflater is freed at once
+        try (InputStream in = connection.getInputStream();
+             InputStream content = gzip ? new GZIPInputStream(in) : in) {
+            readUsers(content, result);
+            drain(in);
+        }
+    }
+
+    private static byte[] writeRequest(List<String> slackIds) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + slackIds.size() * 16);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart(SLACK_IDS);
+            for (String slackId : slackIds) {
+                generator.writeString(slackId);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private static void readUsers(InputStream in, List<UserDTO> result) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected an array of users");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.getCurrentToken() == null) {
+                    throw new JsonParseException(parser, "Unexpected end of the users array");
+                }
+                result.add(SlackCommandJsonCodec.readUser(parser));
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of the raw body before it is closed, so the connection can be reused
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        byte[] buffer = new byte[4096];
+        while (in.read(buffer) != -1) {
+            // skip
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ua.com.juja.slack.command.handler.user;
+
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Replaces users received from the delegate with the instance which was received before for the same slackId,
+ * if it is equal. Every call still goes to the delegate, so a changed user replaces the old instance,
+ * but the long lived commands of the same users share one UserDTO.
+ * A changed user is dropped from the table by {@link #onUserChanged(UserChangeEvent)}.
+ */
+public class InterningUserBySlackUserId implements UserBySlackUserId, UserChangeListener {
+
+    private final UserBySlackUserId userBySlackUserId;
+    private final int maximumSize;
+    private final ConcurrentMap<String, UserDTO> usersBySlackId = new ConcurrentHashMap<>();
+
+    /**
+     * @param maximumSize the table is cleared when it grows over the maximumSize
+     */
+    public InterningUserBySlackUserId(UserBySlackUserId userBySlackUserId, int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException(String.format("Wrong maximumSize [%d]", maximumSize));
+        }
+        this.userBySlackUserId = userBySlackUserId;
+        this.maximumSize = maximumSize;
+    }
+
+    @Override
+    public List<UserDTO> findUsersBySlackUserId(List<String> slackNames) {
+        List<UserDTO> received = userBySlackUserId.findUsersBySlackUserId(slackNames);
+        List<UserDTO> result = new ArrayList<>(received.size());
+        for (UserDTO user : received) {
+            result.add(intern(user));
+        }
+        return result;
+    }
+
+    public UserDTO intern(UserDTO user) {
+        if (user == null || user.getSlackId() == null) {
+            return user;
+        }
+        UserDTO interned = usersBySlackId.get(user.getSlackId());
+        if (user.equals(interned)) {
+            return interned;
+        }
+        if (interned == null && usersBySlackId.size() >= maximumSize) {
+            usersBySlackId.clear();
+        }
+        usersBySlackId.put(user.getSlackId(), user);
+        return user;
+    }
+
+    @Override
+    public void onUserChanged(UserChangeEvent event) {
+        if (event.getSlackId() != null) {
+            usersBySlackId.remove(event.getSlackId());
+        }
+        if (event.getUuid() != null) {
+            usersBySlackId.values().removeIf(event::matches);
+        }
+    }
+
+    public int size() {
+        return usersBySlackId.size();
+    }
+}
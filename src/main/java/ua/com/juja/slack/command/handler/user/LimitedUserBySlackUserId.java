@@ -0,0 +1,45 @@
+package ua.com.juja.slack.command.handler.user;
+
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.exception.UserServiceUnavailableException;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * At most maxConcurrentCalls calls of the delegate at once, other callers wait for their turn.
+ * Waiting is cheap on virtual threads, unlike {@link ResilientUserBySlackUserId} which rejects extra calls.
+ */
+public class LimitedUserBySlackUserId implements UserBySlackUserId {
+
+    private final UserBySlackUserId userBySlackUserId;
+    private final Semaphore permits;
+
+    public LimitedUserBySlackUserId(UserBySlackUserId userBySlackUserId, int maxConcurrentCalls) {
+        if (maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException(String.format("Wrong maxConcurrentCalls [%d]", maxConcurrentCalls));
+        }
+        this.userBySlackUserId = userBySlackUserId;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    @Override
+    public List<UserDTO> findUsersBySlackUserId(List<String> slackNames) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UserServiceUnavailableException("Interrupted while waiting for the user service", e);
+        }
+        try {
+            return userBySlackUserId.findUsersBySlackUserId(slackNames);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getWaitingCallers() {
+        return permits.getQueueLength();
+    }
+}
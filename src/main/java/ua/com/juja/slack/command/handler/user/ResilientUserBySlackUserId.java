@@ -0,0 +1,307 @@
+package ua.com.juja.slack.command.handler.user;
+
+import lombok.extern.slf4j.Slf4j;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.exception.UserServiceUnavailableException;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Protects the caller threads from a slow or failing user service.
+ * <ul>
+ * <li>timeout: the delegate is called on the executor and the caller waits at most timeout for it;</li>
+ * <li>bulkhead: at most maxConcurrentCalls calls of the delegate at once, other calls are rejected at once.
+ * A call which timed out holds its permit until the delegate really returns;</li>
+ * <li>circuit breaker: after failureThreshold consecutive failures (or timeouts) the breaker is OPEN and calls
+ * are rejected without calling the delegate. After openDuration one probe call is let through (HALF_OPEN):
+ * its success closes the breaker, its failure opens it again;</li>
+ * <li>stale fallback: users of the successful calls are remembered, a rejected or failed call is answered with
+ * them if all the requested slackIds are known. Changed users are forgotten by
+ * {@link #onUserChanged(UserChangeEvent)}, a call which overlapped the event doesn't remember the changed
+ * user.</li>
+ * </ul>
+ * Failures are thrown as {@link UserServiceUnavailableException}.
+ */
+@Slf4j
+public class ResilientUserBySlackUserId implements UserBySlackUserId, UserChangeListener {
+
+    private static final int MAX_STALE_USERS_CHANGES = 1024;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public interface StateListener {
+        StateListener NONE = (from, to) -> { };
+
+        /**
+         * Called under the breaker lock, so it has to be fast
+         */
+        void onStateChange(State from, State to);
+    }
+
+    private final UserBySlackUserId userBySlackUserId;
+    private final ExecutorService executor;
+    private final long timeoutNanos;
+    private final int maxConcurrentCalls;
+    private final Semaphore bulkhead;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final int staleCacheSize;
+    private final LongSupplier nanoTime;
+    private final Map<String, UserDTO> staleUsers;
+    // guarded by staleUsers
+    private final UserInvalidations staleUsersChanges = new UserInvalidations(MAX_STALE_USERS_CHANGES);
+    private volatile StateListener stateListener = StateListener.NONE;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInProgress;
+
+    /**
+     * @param executor           the delegate is called on, null to call it on the caller thread without timeout
+     * @param timeout            for the delegate call, 0 means without timeout
+     * @param maxConcurrentCalls bulkhead size
+     * @param failureThreshold   consecutive failures which open the breaker
+     * @param openDuration       how long the breaker stays open before the probe call
+     * @param staleCacheSize     how many last received users are kept for the fallback, 0 disables the fallback
+     */
+    public ResilientUserBySlackUserId(UserBySlackUserId userBySlackUserId, ExecutorService executor, long timeout,
+                                      int maxConcurrentCalls, int failureThreshold, long openDuration,
+                                      int staleCacheSize, TimeUnit unit) {
+        this(userBySlackUserId, executor, unit.toNanos(timeout), maxConcurrentCalls, failureThreshold,
+                unit.toNanos(openDuration), staleCacheSize, System::nanoTime);
+    }
+
+    ResilientUserBySlackUserId(UserBySlackUserId userBySlackUserId, ExecutorService executor, long timeoutNanos,
+                               int maxConcurrentCalls, int failureThreshold, long openDurationNanos,
+                               int staleCacheSize, LongSupplier nanoTime) {
+        if (timeoutNanos < 0 || timeoutNanos > 0 && executor == null || maxConcurrentCalls < 1
+                || failureThreshold < 1 || openDurationNanos <= 0 || staleCacheSize < 0) {
+            throw new IllegalArgumentException(String.format("Wrong resilience settings: timeout [%d ns], " +
+                            "executor [%s], maxConcurrentCalls [%d], failureThreshold [%d], openDuration [%d ns], " +
+                            "staleCacheSize [%d]", timeoutNanos, executor, maxConcurrentCalls, failureThreshold,
+                    openDurationNanos, staleCacheSize));
+        }
+        this.userBySlackUserId = userBySlackUserId;
+        this.executor = executor;
+        this.timeoutNanos = timeoutNanos;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDurationNanos;
+        this.staleCacheSize = staleCacheSize;
+        this.nanoTime = nanoTime;
+        this.staleUsers = new LinkedHashMap<String, UserDTO>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserDTO> eldest) {
+                return size() > ResilientUserBySlackUserId.this.staleCacheSize;
+            }
+        };
+    }
+
+    public void setStateListener(StateListener stateListener) {
+        this.stateListener = stateListener;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    @Override
+    public List<UserDTO> findUsersBySlackUserId(List<String> slackNames) {
+        if (!acquirePermission()) {
+            return fallback(slackNames, new UserServiceUnavailableException(String.format(
+                    "Circuit breaker is %s, the user service isn't called", getState())));
+        }
+        if (!bulkhead.tryAcquire()) {
+            releasePermission();
+            return fallback(slackNames, new UserServiceUnavailableException(String.format(
+                    "Bulkhead is full, more than %d concurrent calls of the user service", maxConcurrentCalls)));
+        }
+        long callStartedAt = staleUsersChangesStart();
+        List<UserDTO> result;
+        try {
+            result = call(slackNames);
+        } catch (UserServiceUnavailableException e) {
+            onFailure();
+            return fallback(slackNames, e);
+        } catch (Throwable e) {
+            // e.g. an Error of the delegate called on this thread, the probe permission is given back anyway
+            onFailure();
+            throw e;
+        }
+        onSuccess();
+        remember(result, callStartedAt);
+        return result;
+    }
+
+    /**
+     * Calls the delegate with the acquired bulkhead permit and releases it when the delegate returns
+     */
+    private List<UserDTO> call(List<String> slackNames) {
+        if (timeoutNanos == 0) {
+            try {
+                return userBySlackUserId.findUsersBySlackUserId(slackNames);
+            } catch (RuntimeException e) {
+                throw new UserServiceUnavailableException(String.format("The user service failed: %s",
+                        e.getMessage()), e);
+            } finally {
+                bulkhead.release();
+            }
+        }
+        // the task and the caller which gave up before the task started race for the permit
+        AtomicBoolean permitTaken = new AtomicBoolean();
+        Future<List<UserDTO>> future;
+        try {
+            future = executor.submit(() -> {
+                if (!permitTaken.compareAndSet(false, true)) {
+                    return Collections.<UserDTO>emptyList();
+                }
+                try {
+                    return userBySlackUserId.findUsersBySlackUserId(slackNames);
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            throw new UserServiceUnavailableException("The user service call was rejected by the executor", e);
+        }
+        try {
+            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            releaseIfNotStarted(permitTaken);
+            throw new UserServiceUnavailableException(String.format("The user service didn't answer in %d ms",
+                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos)), e);
+        } catch (ExecutionException e) {
+            throw new UserServiceUnavailableException(String.format("The user service failed: %s",
+                    e.getCause().getMessage()), e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            releaseIfNotStarted(permitTaken);
+            Thread.currentThread().interrupt();
+            throw new UserServiceUnavailableException("Interrupted while waiting for the user service", e);
+        }
+    }
+
+    private void releaseIfNotStarted(AtomicBoolean permitTaken) {
+        if (permitTaken.compareAndSet(false, true)) {
+            bulkhead.release();
+        }
+    }
+
+    private synchronized boolean acquirePermission() {
+        if (state == State.OPEN && nanoTime.getAsLong() - openedAt >= openDurationNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInProgress) {
+                return false;
+            }
+            probeInProgress = true;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    /**
+     * The probe permission of HALF_OPEN state is given back when the call didn't happen
+     */
+    private synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            probeInProgress = false;
+        }
+    }
+
+    private synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInProgress = false;
+        if (state != State.CLOSED) {
+            transitionTo(State.CLOSED);
+        }
+    }
+
+    private synchronized void onFailure() {
+        consecutiveFailures++;
+        probeInProgress = false;
+        if (state == State.HALF_OPEN || state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            openedAt = nanoTime.getAsLong();
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State newState) {
+        State oldState = state;
+        state = newState;
+        log.warn("User service circuit breaker: {} -> {}", oldState, newState);
+        stateListener.onStateChange(oldState, newState);
+    }
+
+    @Override
+    public void onUserChanged(UserChangeEvent event) {
+        synchronized (staleUsers) {
+            staleUsersChanges.invalidate(event);
+            if (event.getSlackId() != null) {
+                staleUsers.remove(event.getSlackId());
+            }
+            if (event.getUuid() != null) {
+                staleUsers.values().removeIf(event::matches);
+            }
+        }
+    }
+
+    private long staleUsersChangesStart() {
+        synchronized (staleUsers) {
+            return staleUsersChanges.start();
+        }
+    }
+
+    private void remember(List<UserDTO> users, long callStartedAt) {
+        if (staleCacheSize == 0) {
+            return;
+        }
+        synchronized (staleUsers) {
+            for (UserDTO user : users) {
+                if (!staleUsersChanges.isChangedSince(callStartedAt, user)) {
+                    staleUsers.put(user.getSlackId(), user);
+                }
+            }
+        }
+    }
+
+    private List<UserDTO> fallback(List<String> slackNames, UserServiceUnavailableException error) {
+        if (staleCacheSize > 0) {
+            List<UserDTO> result = new ArrayList<>(slackNames.size());
+            synchronized (staleUsers) {
+                for (String slackName : slackNames) {
+                    UserDTO user = staleUsers.get(slackName);
+                    if (user == null) {
+                        throw error;
+                    }
+                    result.add(user);
+                }
+            }
+            log.warn("Answered with stale users for {} slack names: {}", slackNames.size(), error.getMessage());
+            return result;
+        }
+        throw error;
+    }
+}
@@ -0,0 +1,13 @@
+package ua.com.juja.slack.command.handler.user;
+
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+
+/**
+ * In-process cache of users which forgets the changed user, see {@link UserInvalidationFeed}
+ */
+public interface UserChangeListener {
+    /**
+     * Called on the thread which published the event, so it has to be fast
+     */
+    void onUserChanged(UserChangeEvent event);
+}
@@ -0,0 +1,111 @@
+package ua.com.juja.slack.command.handler.user;
+
+import lombok.extern.slf4j.Slf4j;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entry point for "user changed" events, e.g. from a message queue consumer or a webhook controller:
+ * every event is passed to all registered caches, which forget the user, so the next command receives it
+ * from the user service again. With the feed in place caches can have long ttl.
+ * <p>
+ * Events can come twice or out of order: the last version is remembered for maxTrackedKeys last slackIds and
+ * uuids, an event which isn't newer than it is dropped. Dropping is safe because the newer event already
+ * evicted the user after the older change. An event of a forgotten key is applied again.
+ */
+@Slf4j
+public class UserInvalidationFeed {
+
+    private final int maxTrackedKeys;
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> versionsBySlackId;
+    private final Map<String, Long> versionsByUuid;
+    private final AtomicLong appliedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    public UserInvalidationFeed(int maxTrackedKeys) {
+        if (maxTrackedKeys < 1) {
+            throw new IllegalArgumentException(String.format("Wrong maxTrackedKeys [%d]", maxTrackedKeys));
+        }
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.versionsBySlackId = newVersions();
+        this.versionsByUuid = newVersions();
+    }
+
+    public void addListener(UserChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(UserChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return false if the event is dropped as outdated
+     */
+    public boolean publish(UserChangeEvent event) {
+        if (event.getSlackId() == null && event.getUuid() == null) {
+            throw new IllegalArgumentException(String.format("Event without slackId and uuid: %s", event));
+        }
+        if (event.hasVersion() && !acceptVersion(event)) {
+            droppedCount.incrementAndGet();
+            log.debug("Dropped outdated {}", event);
+            return false;
+        }
+        for (UserChangeListener listener : listeners) {
+            listener.onUserChanged(event);
+        }
+        appliedCount.incrementAndGet();
+        log.debug("Applied {}", event);
+        return true;
+    }
+
+    public long getAppliedCount() {
+        return appliedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * The event is newer if it is newer for at least one of its keys, versions of both keys are updated
+     */
+    private synchronized boolean acceptVersion(UserChangeEvent event) {
+        boolean newer = isNewer(versionsBySlackId, event.getSlackId(), event.getVersion())
+                | isNewer(versionsByUuid, event.getUuid(), event.getVersion());
+        if (newer) {
+            remember(versionsBySlackId, event.getSlackId(), event.getVersion());
+            remember(versionsByUuid, event.getUuid(), event.getVersion());
+        }
+        return newer;
+    }
+
+    private static boolean isNewer(Map<String, Long> versions, String key, long version) {
+        if (key == null) {
+            return false;
+        }
+        Long last = versions.get(key);
+        return last == null || version > last;
+    }
+
+    private static void remember(Map<String, Long> versions, String key, long version) {
+        if (key != null) {
+            versions.merge(key, version, Math::max);
+        }
+    }
+
+    private Map<String, Long> newVersions() {
+        return new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxTrackedKeys;
+            }
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package ua.com.juja.slack.command.handler.user;
+
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which slackIds and uuids were invalidated and when, so the users of a delegate call which overlapped
+ * an invalidation are discarded only if they were changed, other users of the call can be cached.
+ * <p>
+ * A call takes {@link #start()} before the delegate is called and checks every loaded user with
+ * {@link #isChangedSince(long, UserDTO)}. At most maxSize slackIds and uuids are remembered, when an old one is
+ * dropped every call started before it is treated as changed. Not thread safe, guarded by the lock of the owner.
+ */
+final class UserInvalidations {
+
+    private final int maxSize;
+    private final Map<String, Long> slackIds = new LinkedHashMap<>();
+    private final Map<String, Long> uuids = new LinkedHashMap<>();
+    private long sequence;
+    // calls started before it are changed for every user
+    private long allChangedAt;
+
+    UserInvalidations(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    long start() {
+        return sequence;
+    }
+
+    void invalidate(UserChangeEvent event) {
+        sequence++;
+        put(slackIds, event.getSlackId());
+        put(uuids, event.getUuid());
+    }
+
+    void invalidateSlackId(String slackId) {
+        sequence++;
+        put(slackIds, slackId);
+    }
+
+    void invalidateAll() {
+        sequence++;
+        allChangedAt = sequence;
+        slackIds.clear();
+        uuids.clear();
+    }
+
+    boolean isChangedSince(long startedAt, UserDTO user) {
+        return isChangedSince(startedAt, user.getSlackId(), user.getUuid());
+    }
+
+    /**
+     * @param uuid can be null, e.g. for a slackId unknown to the user service
+     */
+    boolean isChangedSince(long startedAt, String slackId, String uuid) {
+        return allChangedAt > startedAt
+                || changedAt(slackIds, slackId) > startedAt
+                || changedAt(uuids, uuid) > startedAt;
+    }
+
+    private void put(Map<String, Long> changes, String key) {
+        if (key == null) {
+            return;
+        }
+        // removed first, so the insertion order stays the order of the changes
+        changes.remove(key);
+        changes.put(key, sequence);
+        if (changes.size() > maxSize) {
+            Iterator<Long> eldest = changes.values().iterator();
+            allChangedAt = Math.max(allChangedAt, eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static long changedAt(Map<String, Long> changes, String key) {
+        if (key == null || changes.isEmpty()) {
+            return 0;
+        }
+        Long changedAt = changes.get(key);
+        return changedAt == null ? 0 : changedAt;
+    }
+}
@@ -0,0 +1,137 @@
+package ua.com.juja.slack.command.handler.user;
+
+import lombok.Getter;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of received users, used to warm up {@link CachingUserBySlackUserId} after restart.
+ * <p>
+ * Format: magic, version, creation time (epoch millis), user count, users as length prefixed UTF-8
+ * slackId and uuid (length -1 for null uuid), CRC32 of all the preceding bytes. The file is read memory mapped.
+ */
+@Getter
+public final class UserSnapshot {
+    static final int MAGIC = 0x534C5553;
+    static final int VERSION = 1;
+
+    private final long createdAtMillis;
+    private final List<UserDTO> users;
+
+    private UserSnapshot(long createdAtMillis, List<UserDTO> users) {
+        this.createdAtMillis = createdAtMillis;
+        this.users = Collections.unmodifiableList(users);
+    }
+
+    /**
+     * Writes to a temporary file which replaces the file at once, so readers never see a partial snapshot.
+     * Users without slackId are skipped.
+     */
+    public static void write(Path file, Collection<UserDTO> users) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeLong(System.currentTimeMillis());
+            int count = 0;
+            for (UserDTO user : users) {
+                if (user.getSlackId() != null) {
+                    count++;
+                }
+            }
+            data.writeInt(count);
+            for (UserDTO user : users) {
+                if (user.getSlackId() != null) {
+                    writeString(data, user.getSlackId());
+                    writeString(data, user.getUuid());
+                }
+            }
+            data.flush();
+            data.writeInt((int) checked.getChecksum().getValue());
+            data.flush();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @throws IOException if the file isn't a snapshot of the supported version or it is damaged
+     */
+    public static UserSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 24 || size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Wrong size [%d] of the users snapshot %s", size, file));
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(String.format("File %s isn't a users snapshot", file));
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported users snapshot version [%d] in %s", version, file));
+            }
+            CRC32 crc = new CRC32();
+            ByteBuffer content = buffer.duplicate();
+            content.position(0).limit((int) size - 4);
+            crc.update(content);
+            if ((int) crc.getValue() != buffer.getInt((int) size - 4)) {
+                throw new IOException(String.format("Checksum mismatch, the users snapshot %s is damaged", file));
+            }
+            buffer.limit((int) size - 4);
+            try {
+                long createdAtMillis = buffer.getLong();
+                int count = buffer.getInt();
+                List<UserDTO> users = new ArrayList<>(Math.min(count, buffer.remaining() / 8));
+                byte[] scratch = new byte[64];
+                for (int i = 0; i < count; i++) {
+                    String slackId = readString(buffer, scratch);
+                    String uuid = readString(buffer, scratch);
+                    users.add(new UserDTO(uuid, slackId));
+                }
+                return new UserSnapshot(createdAtMillis, users);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+                throw new IOException(String.format("The users snapshot %s is truncated", file), e);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        if (value == null) {
+            data.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
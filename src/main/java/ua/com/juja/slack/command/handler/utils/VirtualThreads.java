@@ -0,0 +1,63 @@
+package ua.com.juja.slack.command.handler.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Virtual threads of Java 21+ for the blocking user service calls. The library is compiled for Java 8,
+ * so the executor is looked up by reflection and a bounded pool is used on older JVMs.
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * @param fallbackThreads size of the pool if virtual threads aren't supported, idle threads stop after a minute
+     * @return executor which starts a virtual thread per task, or the bounded pool of daemon threads
+     */
+    public static ExecutorService newExecutor(int fallbackThreads, String threadNamePrefix) {
+        if (fallbackThreads < 1) {
+            throw new IllegalArgumentException(String.format("Wrong fallbackThreads [%d]", fallbackThreads));
+        }
+        if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Can't create virtual thread executor, using a pool of {} threads: {}",
+                        fallbackThreads, e.getMessage());
+            }
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor result = new ThreadPoolExecutor(fallbackThreads, fallbackThreads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        result.allowCoreThreadTimeOut(true);
+        return result;
+    }
+
+    private static Method findVirtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package ua.com.juja.slack.command.handler.dispatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.exception.ParseSlackCommandException;
+import ua.com.juja.slack.command.handler.exception.SlackCommandDispatchException;
+import ua.com.juja.slack.command.handler.exception.SlackCommandErrorCode;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+import ua.com.juja.slack.command.handler.schema.SlackCommandSchema;
+import ua.com.juja.slack.command.handler.schema.TokenRule;
+import ua.com.juja.slack.command.handler.service.SlackCommandHandlerService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SlackCommandDispatcherTest {
+
+    private final UserDTO userFrom = new UserDTO("AAA000", "UFDR97JLA");
+    private final UserDTO user1 = new UserDTO("AAA111", "U1DR97JLA");
+    private final UserBySlackUserId userBySlackUserId = slackIds -> Stream.of(userFrom, user1)
+            .filter(user -> slackIds.contains(user.getSlackId()))
+            .collect(Collectors.toList());
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ExecutorService slowExecutor = Executors.newSingleThreadExecutor();
+    private SlackCommandDispatcher<String> dispatcher;
+
+    @Before
+    public void setup() {
+        dispatcher = new SlackCommandDispatcher<>(new SlackCommandHandlerService(userBySlackUserId));
+        dispatcher.register("/kudos", SlackCommandSchema.compile(Collections.singletonList(TokenRule.required("-to"))),
+                (command, arguments) -> command.getFromUser().getUuid() + " thanks " +
+                        arguments.getUser("-to").getUuid(), executor, 10);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        slowExecutor.shutdownNow();
+    }
+
+    @Test
+    public void commandIsRoutedToItsHandler() throws Exception {
+        //when
+        String result = dispatcher.dispatch("/kudos", "UFDR97JLA", "-to <@U1DR97JLA|slackName1> for help")
+                .get(5, TimeUnit.SECONDS);
+        //then
+        assertEquals("AAA000 thanks AAA111", result);
+        assertEquals(1, dispatcher.getStats("/kudos").getDispatchedCount());
+        assertEquals(0, dispatcher.getStats("/kudos").getFailedCount());
+    }
+
+    @Test
+    public void wrongTextFailsBeforeHandler() throws Exception {
+        //when
+        Throwable error = failure(dispatcher.dispatch("/kudos", "UFDR97JLA", "for help"));
+        //then
+        assertEquals(SlackCommandErrorCode.TOKEN_NOT_FOUND, ((ParseSlackCommandException) error).getErrorCode());
+        assertEquals(1, dispatcher.getStats("/kudos").getFailedCount());
+    }
+
+    @Test
+    public void unknownCommandIsRejected() throws Exception {
+        //when
+        Throwable error = failure(dispatcher.dispatch("/unknown", "UFDR97JLA", "text"));
+        //then
+        assertEquals(SlackCommandErrorCode.UNKNOWN_COMMAND, ((SlackCommandDispatchException) error).getErrorCode());
+        assertNull(dispatcher.getStats("/unknown"));
+    }
+
+    @Test
+    public void commandsOverLimitAreRejectedWithoutAffectingOthers() throws Exception {
+        //given
+        final CountDownLatch release = new CountDownLatch(1);
+        dispatcher.register("/slow", SlackCommandSchema.compile(Collections.<TokenRule>emptyList()),
+                (command, arguments) -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "slow";
+                }, slowExecutor, 1);
+        CompletableFuture<String> slow = dispatcher.dispatch("/slow", "UFDR97JLA", "text");
+        //when
+        Throwable rejected = failure(dispatcher.dispatch("/slow", "UFDR97JLA", "text"));
+        String kudos = dispatcher.dispatch("/kudos", "UFDR97JLA", "-to <@U1DR97JLA|slackName1>")
+                .get(5, TimeUnit.SECONDS);
+        //then
+        assertEquals(SlackCommandErrorCode.TOO_MANY_COMMANDS, ((SlackCommandDispatchException) rejected).getErrorCode());
+        assertEquals("AAA000 thanks AAA111", kudos);
+        release.countDown();
+        assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+        assertEquals(1, dispatcher.getStats("/slow").getRejectedCount());
+        assertEquals("slow", dispatcher.dispatch("/slow", "UFDR97JLA", "text").get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("/kudos", "/slow"),
+                dispatcher.getCommandNames().stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void slowUserServiceDoesNotBlockDispatchCaller() throws Exception {
+        //given
+        final CountDownLatch release = new CountDownLatch(1);
+        SlackCommandDispatcher<String> slowUsers = new SlackCommandDispatcher<>(new SlackCommandHandlerService(
+                slackIds -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return userBySlackUserId.findUsersBySlackUserId(slackIds);
+                }));
+        slowUsers.register("/kudos", SlackCommandSchema.compile(Collections.singletonList(TokenRule.required("-to"))),
+                (command, arguments) -> arguments.getUser("-to").getUuid(), slowExecutor, 1);
+        //when
+        CompletableFuture<String> result = slowUsers.dispatch("/kudos", "UFDR97JLA", "-to <@U1DR97JLA|slackName1>");
+        //then
+        assertEquals(false, result.isDone());
+        release.countDown();
+        assertEquals("AAA111", result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void permitIsBackWhenCallerSeesCompletion() throws Exception {
+        //given
+        dispatcher.register("/once", SlackCommandSchema.compile(Collections.<TokenRule>emptyList()),
+                (command, arguments) -> {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "done";
+                }, executor, 1);
+        //when
+        String result = dispatcher.dispatch("/once", "UFDR97JLA", "text")
+                .thenCompose(first -> dispatcher.dispatch("/once", "UFDR97JLA", "text"))
+                .get(5, TimeUnit.SECONDS);
+        //then
+        assertEquals("done", result);
+        assertEquals(2, dispatcher.getStats("/once").getDispatchedCount());
+        assertEquals(0, dispatcher.getStats("/once").getRejectedCount());
+    }
+
+    @Test
+    public void commandCanBeRegisteredOnce() {
+        //when
+        try {
+            dispatcher.register("/kudos", SlackCommandSchema.compile(Collections.<TokenRule>emptyList()),
+                    (command, arguments) -> "", executor, 1);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            //then
+            assertTrue(e.getMessage().contains("already registered"));
+        }
+    }
+
+    private static Throwable failure(CompletableFuture<String> result) throws Exception {
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            fail("ExecutionException expected");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ua.com.juja.slack.command.handler.exception;
+
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParseSlackCommandExceptionTest {
+
+    @Test
+    public void failureHasErrorCodeAndNoStackTrace() {
+        //given
+        final SlackParsedCommand command = new SlackParsedCommand(new UserDTO("uuid0", "U0"), "-to <@U1|name1> -to",
+                Collections.singletonList(new UserDTO("uuid1", "U1")));
+        //when
+        try {
+            command.getUsersWithTokens(Collections.singleton("-to"));
+            fail("ParseSlackCommandException expected");
+        } catch (ParseSlackCommandException e) {
+            //then
+            assertEquals(SlackCommandErrorCode.DUPLICATED_TOKEN, e.getErrorCode());
+            assertArrayEquals(new Object[]{"-to <@U1|name1> -to", 2, "-to"}, e.getArguments());
+            assertEquals(0, e.getStackTrace().length);
+            assertEquals("The text '-to <@U1|name1> -to' contains 2 tokens '-to', but expected 1", e.getMessage());
+        }
+    }
+
+    @Test
+    public void messageConstructorKeepsStackTrace() {
+        //when
+        ParseSlackCommandException result = new ParseSlackCommandException("wrong command");
+        //then
+        assertEquals(SlackCommandErrorCode.OTHER, result.getErrorCode());
+        assertEquals("wrong command", result.getMessage());
+        assertTrue(result.getStackTrace().length > 0);
+    }
+
+    @Test
+    public void userServiceResponseMessageIsRenderedOnDemand() {
+        //when
+        UserServiceResponseException result = new UserServiceResponseException(
+                SlackCommandErrorCode.USER_NOT_IN_RESPONSE, "U1");
+        //then
+        assertEquals(0, result.getStackTrace().length);
+        assertEquals("Error. User for slackUserId: [U1] didn't find in the user service response",
+                result.getMessage());
+    }
+
+    @Test
+    public void mutableArgumentsAreCopied() {
+        //given
+        final StringBuilder text = new StringBuilder("-to");
+        final List<UserDTO> receivedUsers = new ArrayList<>(Collections.singletonList(new UserDTO("uuid1", "U1")));
+        ParseSlackCommandException parseFailure = new ParseSlackCommandException(
+                SlackCommandErrorCode.NO_SLACK_NAMES, text);
+        UserServiceResponseException responseFailure = new UserServiceResponseException(
+                SlackCommandErrorCode.USER_NOT_FOUND, "U2", receivedUsers);
+        //when
+        text.append(" reused");
+        receivedUsers.clear();
+        //then
+        assertEquals("The text '-to' doesn't contain any slack names", parseFailure.getMessage());
+        assertEquals("Error. User for slackUserId: [U2] didn't find in the List of Users: " +
+                "[UserDTO(uuid=uuid1, slackId=U1)]", responseFailure.getMessage());
+    }
+}
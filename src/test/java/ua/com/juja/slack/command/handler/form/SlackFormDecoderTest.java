@@ -0,0 +1,71 @@
+package ua.com.juja.slack.command.handler.form;
+
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.parser.SlackMentionScanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SlackFormDecoderTest {
+
+    private static final String BODY = "token=gIkuvaNzQIHg97ATvDxqgjtO&team_id=T0001&team_domain=example" +
+            "&channel_id=C2147483705&user_id=UFDR97JLA&user_name=Steve&command=%2Fkudos" +
+            "&text=-to+%3C%40U1DR97JLA%7Cslack.name1%3E+%D0%B4%D1%8F%D0%BA%D1%83%D1%8E" +
+            "&response_url=https%3A%2F%2Fhooks.slack.com%2Fcommands%2F1234%2F5678&trigger_id=13345224609.738474920";
+
+    @Test
+    public void neededFieldsAreDecodedAndTextIsScanned() {
+        //when
+        SlackCommandForm result = SlackFormDecoder.decode(BODY.getBytes(StandardCharsets.US_ASCII));
+        //then
+        assertEquals("UFDR97JLA", result.getUserId());
+        assertEquals("T0001", result.getTeamId());
+        assertEquals("/kudos", result.getCommand());
+        assertEquals("https://hooks.slack.com/commands/1234/5678", result.getResponseUrl());
+        assertEquals("-to <@U1DR97JLA|slack.name1> \u0434\u044f\u043a\u0443\u044e", result.getText().toString());
+        assertEquals(Arrays.asList("U1DR97JLA"), result.getMentionIndex().getSlackIds());
+        assertEquals(SlackMentionScanner.scan(result.getText()).getMentions(), result.getMentionIndex().getMentions());
+    }
+
+    @Test
+    public void bufferRangeIsDecodedWithoutMovingPosition() {
+        //given
+        final byte[] bytes = ("GARBAGE" + "user_id=U1&text=hi+%3C%40U2%7Cname%3E").getBytes(StandardCharsets.US_ASCII);
+        final ByteBuffer body = ByteBuffer.wrap(bytes);
+        body.position(7);
+        //when
+        SlackCommandForm result = SlackFormDecoder.decode(body);
+        //then
+        assertEquals("U1", result.getUserId());
+        assertEquals("hi <@U2|name>", result.getText().toString());
+        assertEquals(1, result.getMentionIndex().size());
+        assertNull(result.getCommand());
+        assertEquals(7, body.position());
+    }
+
+    @Test
+    public void malformedUtf8IsReplaced() {
+        //when
+        SlackCommandForm result = SlackFormDecoder.decode("text=a%D0b%FFc%E2%82".getBytes(StandardCharsets.US_ASCII));
+        //then
+        assertEquals("a\uFFFDb\uFFFDc\uFFFD", result.getText().toString());
+    }
+
+    @Test
+    public void malformedEscapeIsRejected() {
+        //when
+        try {
+            SlackFormDecoder.decode("user_id=U1&text=100%".getBytes(StandardCharsets.US_ASCII));
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException e) {
+            //then
+            assertTrue(e.getMessage().startsWith("Incomplete percent escape"));
+        }
+    }
+}
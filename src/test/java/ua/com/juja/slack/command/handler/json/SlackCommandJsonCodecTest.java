@@ -0,0 +1,110 @@
+package ua.com.juja.slack.command.handler.json;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SlackCommandJsonCodecTest {
+
+    private final UserDTO fromUser = new UserDTO("uuid0", "UFDR97JLA");
+    private final UserDTO user1 = new UserDTO("uuid1", "U1DR97JLA");
+    private final UserDTO user2 = new UserDTO(null, "U2DR97JLA");
+    private final SlackParsedCommand command = new SlackParsedCommand(fromUser,
+            "-to <@U1DR97JLA|slackName1> -cc <@U2DR97JLA|slackName2> text", Arrays.asList(user1, user2));
+
+    @Test
+    public void jsonRoundTripKeepsMentionIndex() throws IOException {
+        //given
+        final SlackCommandJsonCodec codec = new SlackCommandJsonCodec();
+        //when
+        byte[] json = codec.writeCommand(command);
+        SlackParsedCommand result = codec.readCommand(json);
+        //then
+        assertEquals("{\"fromUser\":{\"uuid\":\"uuid0\",\"slackId\":\"UFDR97JLA\"}," +
+                "\"text\":\"-to <@U1DR97JLA|slackName1> -cc <@U2DR97JLA|slackName2> text\"," +
+                "\"usersInText\":[{\"uuid\":\"uuid1\",\"slackId\":\"U1DR97JLA\"},{\"uuid\":null,\"slackId\":\"U2DR97JLA\"}]," +
+                "\"mentions\":[[4,27,\"U1DR97JLA\",\"slackName1\"],[32,55,\"U2DR97JLA\",\"slackName2\"]]}",
+                new String(json, StandardCharsets.UTF_8));
+        assertEquals(command, result);
+        assertEquals(command.getMentionIndex(), result.getMentionIndex());
+        assertEquals("-to -cc text", result.getTextWithoutSlackNames());
+    }
+
+    @Test
+    public void smileRoundTrip() throws IOException {
+        //given
+        final SlackCommandJsonCodec codec = new SlackCommandJsonCodec(new SmileFactory());
+        //when
+        SlackParsedCommand result = codec.readCommand(codec.writeCommand(command));
+        //then
+        assertEquals(command, result);
+        assertEquals(command.getMentionIndex(), result.getMentionIndex());
+    }
+
+    @Test
+    public void unknownFieldsAndMissingMentionsAreAllowed() throws IOException {
+        //given
+        final String json = "{\"version\":2,\"fromUser\":{\"uuid\":\"uuid0\",\"slackId\":\"UFDR97JLA\",\"name\":\"bob\"}," +
+                "\"extra\":{\"a\":[1,2]},\"text\":\"hi <@U1DR97JLA|slackName1>\"," +
+                "\"usersInText\":[{\"uuid\":\"uuid1\",\"slackId\":\"U1DR97JLA\"}]}";
+        //when
+        SlackParsedCommand result = new SlackCommandJsonCodec().readCommand(json.getBytes(StandardCharsets.UTF_8));
+        //then
+        assertEquals(new SlackParsedCommand(fromUser, "hi <@U1DR97JLA|slackName1>",
+                Collections.singletonList(user1)), result);
+        assertEquals(Collections.singletonList("U1DR97JLA"), result.getMentionIndex().getSlackIds());
+    }
+
+    @Test
+    public void nullFromUserIsWritten() throws IOException {
+        //given
+        final SlackCommandJsonCodec codec = new SlackCommandJsonCodec();
+        final SlackParsedCommand withoutFromUser = new SlackParsedCommand(null, "text", Collections.emptyList());
+        //when
+        SlackParsedCommand result = codec.readCommand(codec.writeCommand(withoutFromUser));
+        //then
+        assertNull(result.getFromUser());
+        assertEquals(withoutFromUser, result);
+    }
+
+    @Test
+    public void mentionsOutOfTextAreRejected() throws IOException {
+        //given
+        final String json = "{\"text\":\"short\",\"usersInText\":[],\"mentions\":[[0,27,\"U1\",\"name\"]]}";
+        //when
+        try {
+            new SlackCommandJsonCodec().readCommand(json.getBytes(StandardCharsets.UTF_8));
+            fail("JsonParseException expected");
+        } catch (JsonParseException e) {
+            //then
+            assertTrue(e.getMessage().startsWith("Mentions are out of the text"));
+        }
+    }
+
+    @Test
+    public void mentionsNotMatchingTextAreRejected() throws IOException {
+        //given
+        final String json = "{\"text\":\"hi <@U1|bob> and more\",\"usersInText\":[]," +
+                "\"mentions\":[[3,12,\"U2\",\"bob\"]]}";
+        //when
+        try {
+            new SlackCommandJsonCodec().readCommand(json.getBytes(StandardCharsets.UTF_8));
+            fail("JsonParseException expected");
+        } catch (JsonParseException e) {
+            //then
+            assertTrue(e.getMessage().contains("doesn't match the text"));
+        }
+    }
+}
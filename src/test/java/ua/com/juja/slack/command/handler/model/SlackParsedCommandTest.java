@@ -10,6 +10,7 @@ import java.util.*;
 
 import static org.hamcrest.core.StringContains.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author Konstantin Sergey
@@ -106,6 +107,19 @@ public class SlackParsedCommandTest {
         assertEquals(Collections.emptyList(), result);
     }
 
+    @Test(expected = UnsupportedOperationException.class)
+    public void getAllUsersIsNotModifiable() {
+        //given
+        final String text = "text <@U1DR97JLA|slackName1>";
+        final List<UserDTO> usersInText = new ArrayList<>(Collections.singletonList(new UserDTO("uuid1", "U1DR97JLA")));
+        final SlackParsedCommand slackParsedCommand = new SlackParsedCommand(fromUser, text, usersInText);
+        //when
+        usersInText.clear();
+        //then
+        assertEquals(1, slackParsedCommand.getUserCountInText());
+        slackParsedCommand.getAllUsersInText().clear();
+    }
+
     @Test
     public void getText() {
         //given
@@ -173,6 +187,18 @@ public class SlackParsedCommandTest {
         assertEquals("text text", slackParsedCommand.getTextWithoutSlackNames());
     }
 
+    @Test
+    public void getTextWithoutSlackNamesIsComputedOnce() {
+        //given
+        final String text = "<@U1DR97JLA|slackName1> text";
+        final SlackParsedCommand slackParsedCommand = new SlackParsedCommand(fromUser, text, Collections.emptyList());
+        //when
+        String result = slackParsedCommand.getTextWithoutSlackNames();
+        //then
+        assertSame(result, slackParsedCommand.getTextWithoutSlackNames());
+        assertSame(slackParsedCommand.getMentionIndex(), slackParsedCommand.getMentionIndex());
+    }
+
     @Test
     public void getTextWithoutSlackNamesTrimSpaces() {
         //given
@@ -365,4 +391,37 @@ public class SlackParsedCommandTest {
         //when
         slackParsedCommand.getUsersWithTokens(tokens);
     }
+
+    @Test
+    public void getUsersByTokensErrorIfDuplicatedTokenIsAtTheEndOfText() {
+        //given
+        final String text = "-t1 <@U1DR97JLA|slackName1> text -t1";
+        final Set<String> tokens = new HashSet<>(Collections.singletonList("-t1"));
+        final List<UserDTO> usersInText = Collections.singletonList(new UserDTO("uuid1", "U1DR97JLA"));
+        final SlackParsedCommand slackParsedCommand = new SlackParsedCommand(fromUser, text, usersInText);
+        //then
+        thrown.expect(ParseSlackCommandException.class);
+        thrown.expectMessage(containsString("The text '-t1 <@U1DR97JLA|slackName1> text -t1' contains 2 tokens '-t1'," +
+                " but expected 1"));
+        //when
+        slackParsedCommand.getUsersWithTokens(tokens);
+    }
+
+    @Test
+    public void textIsCopiedSoReusedBufferDoesNotChangeCommand() {
+        //given
+        final StringBuilder text = new StringBuilder("text <@U1DR97JLA|slackName1> text");
+        final List<UserDTO> usersInText = Collections.singletonList(new UserDTO("uuid1", "U1DR97JLA"));
+        final SlackParsedCommand slackParsedCommand = new SlackParsedCommand(fromUser, text, usersInText);
+        //when
+        text.setLength(0);
+        text.append("reused buffer");
+        String result = slackParsedCommand.getText();
+        //then
+        assertEquals("text <@U1DR97JLA|slackName1> text", result);
+        assertEquals("text text", slackParsedCommand.getTextWithoutSlackNames());
+        assertSame(result, slackParsedCommand.getText());
+        assertEquals(new SlackParsedCommand(fromUser, result, usersInText), slackParsedCommand);
+        assertEquals(new SlackParsedCommand(fromUser, result, usersInText).hashCode(), slackParsedCommand.hashCode());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,82 @@
+package ua.com.juja.slack.command.handler.parser;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SlackIdTableTest {
+
+    @Test
+    public void sameRangeOfDifferentTextsIsOneInstance() {
+        //given
+        SlackIdTable table = new SlackIdTable(16);
+        //when
+        String first = table.intern("-to <@U1ABC|bob>", 6, 11);
+        String second = table.intern("<@U1ABC|alice>", 2, 7);
+        //then
+        assertEquals("U1ABC", first);
+        assertSame(first, second);
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void differentRangesAreDifferentValues() {
+        //given
+        SlackIdTable table = new SlackIdTable(16);
+        //when
+        String first = table.intern("U1 U2", 0, 2);
+        String second = table.intern("U1 U2", 3, 5);
+        //then
+        assertEquals("U1", first);
+        assertEquals("U2", second);
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void fullTableEvictsOldValues() {
+        //given
+        SlackIdTable table = new SlackIdTable(4);
+        for (int i = 0; i < 100; i++) {
+            table.intern("X" + i, 0, ("X" + i).length());
+        }
+        //when
+        String first = table.intern(new StringBuilder("U1"), 0, 2);
+        String second = table.intern(new StringBuilder("U1"), 0, 2);
+        //then
+        assertEquals("U1", first);
+        assertSame(first, second);
+        assertTrue(table.size() <= 4);
+    }
+
+    @Test
+    public void clearedTableInternsAgain() {
+        //given
+        SlackIdTable table = new SlackIdTable(16);
+        String first = table.intern("U1", 0, 2);
+        //when
+        table.clear();
+        String second = table.intern(new StringBuilder("U1"), 0, 2);
+        //then
+        assertNotSame(first, second);
+        assertSame(second, table.intern("U1", 0, 2));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void scannerInternsOnlySlackIds() {
+        //given
+        SlackIdTable table = new SlackIdTable(16);
+        //when
+        SlackMentionScanner first = new SlackMentionScanner("<@U1|bob>", table);
+        first.advanceTo(9);
+        SlackMentionScanner second = new SlackMentionScanner("hi <@U1|bob>", table);
+        second.advanceTo(12);
+        //then
+        assertSame(first.toIndex().getSlackIds().get(0), second.toIndex().getSlackIds().get(0));
+        assertNotSame(first.toIndex().getMentions().get(0).getSlackName(),
+                second.toIndex().getMentions().get(0).getSlackName());
+    }
+}
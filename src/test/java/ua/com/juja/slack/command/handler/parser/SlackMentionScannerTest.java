@@ -0,0 +1,103 @@
+package ua.com.juja.slack.command.handler.parser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SlackMentionScannerTest {
+
+    private static final Pattern ESCAPED_USER = Pattern.compile("<@\\w+\\|([a-zA-z0-9._-]){1,21}>");
+
+    @Test
+    public void scanTextWithSomeMentions() {
+        //given
+        final String text = "text <@U1DR97JLA|slackName1> text<@U2DR97JLA|slack.name-2>";
+        //when
+        SlackMentionIndex result = SlackMentionScanner.scan(text);
+        //then
+        assertEquals(Arrays.asList(
+                new SlackMention(5, 28, "U1DR97JLA", "slackName1"),
+                new SlackMention(33, 58, "U2DR97JLA", "slack.name-2")), result.getMentions());
+        assertEquals(Arrays.asList("U1DR97JLA", "U2DR97JLA"), result.getSlackIds());
+    }
+
+    @Test
+    public void scanTextWithoutMentions() {
+        //when
+        SlackMentionIndex result = SlackMentionScanner.scan("text @slackName <U1DR97JLA> text");
+        //then
+        assertTrue(result.isEmpty());
+        assertEquals(Collections.emptyList(), result.getSlackIds());
+    }
+
+    @Test
+    public void scanSkipsBrokenCandidates() {
+        //given
+        final String text = "<@|name> <@U1|> <@U2|nameLongerThanTwentyOneChars> <<@U3|name3> <@U4|na me>";
+        //when
+        SlackMentionIndex result = SlackMentionScanner.scan(text);
+        //then
+        assertEquals(Collections.singletonList("U3"), result.getSlackIds());
+    }
+
+    @Test
+    public void scanFindsTheSameMentionsAsRegularExpression() {
+        final char[] alphabet = {'<', '@', '|', '>', 'U', '1', 'a', '_', '.', '-', ' ', '`', '\\'};
+        final Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            //given
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; j++) {
+                text.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            //when
+            SlackMentionIndex result = SlackMentionScanner.scan(text);
+            //then
+            assertEquals(text.toString(), findWithRegularExpression(text.toString()), result.getMentions());
+        }
+    }
+
+    @Test
+    public void firstMentionFrom() {
+        //given
+        final SlackMentionIndex index = SlackMentionScanner.scan("-a <@U1|n1> -b <@U2|n2>");
+        //then
+        assertEquals(0, index.firstMentionFrom(0));
+        assertEquals(1, index.firstMentionFrom(4));
+        assertEquals(1, index.firstMentionFrom(15));
+        assertEquals(2, index.firstMentionFrom(16));
+    }
+
+    @Test
+    public void stripMentions() {
+        //given
+        final String text = "  <@U1DR97JLA|slackName1> text \t <@U1DR97JLA|slackName1>text\n<@U1DR97JLA|slackName1>  ";
+        //when
+        String result = SlackMentionScanner.scan(text).stripMentions(text);
+        //then
+        assertEquals(text.replaceAll(ESCAPED_USER.pattern(), "").replaceAll("\\s+", " ").trim(), result);
+        assertEquals("text text", result);
+    }
+
+    private List<SlackMention> findWithRegularExpression(String text) {
+        List<SlackMention> result = new ArrayList<>();
+        Matcher matcher = ESCAPED_USER.matcher(text);
+        while (matcher.find()) {
+            String mention = matcher.group();
+            result.add(new SlackMention(matcher.start(), matcher.end(),
+                    mention.substring(2, mention.indexOf('|')),
+                    mention.substring(mention.indexOf('|') + 1, mention.length() - 1)));
+        }
+        return result;
+    }
+}
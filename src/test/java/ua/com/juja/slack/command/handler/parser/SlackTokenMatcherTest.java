@@ -0,0 +1,79 @@
+package ua.com.juja.slack.command.handler.parser;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SlackTokenMatcherTest {
+
+    @Test
+    public void matchCountsAndFirstPositions() {
+        //given
+        final SlackTokenMatcher matcher = SlackTokenMatcher.compile(Arrays.asList("-to", "-t", "-from"));
+        //when
+        SlackTokenOccurrences result = matcher.match("-from <@U1|a> -to <@U2|b> -t");
+        //then
+        assertEquals(1, result.getCount(0));
+        assertEquals(14, result.getFirstPosition(0));
+        assertEquals(2, result.getCount(1));
+        assertEquals(14, result.getFirstPosition(1));
+        assertEquals(1, result.getCount(2));
+        assertEquals(0, result.getFirstPosition(2));
+        assertArrayEquals(new int[]{2, 0, 1}, result.foundTokensInTextOrder());
+    }
+
+    @Test
+    public void tokenWhichIsNotInText() {
+        //when
+        SlackTokenOccurrences result = SlackTokenMatcher.compile(Collections.singletonList("-t1")).match("text -t2");
+        //then
+        assertEquals(0, result.getCount(0));
+        assertEquals(-1, result.getFirstPosition(0));
+        assertArrayEquals(new int[0], result.foundTokensInTextOrder());
+    }
+
+    @Test
+    public void matchCountsLikeIndexOf() {
+        final List<String> tokens = Arrays.asList("aa", "ab", "a-b", "b", "bab", "-");
+        final SlackTokenMatcher matcher = SlackTokenMatcher.compile(tokens);
+        final char[] alphabet = {'a', 'b', '-', ' ', '\u044B'};
+        final Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            //given
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(30);
+            for (int j = 0; j < length; j++) {
+                text.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            //when
+            SlackTokenOccurrences result = matcher.match(text);
+            //then
+            for (int tokenIndex = 0; tokenIndex < tokens.size(); tokenIndex++) {
+                String token = tokens.get(tokenIndex);
+                assertEquals(text + " " + token, text.indexOf(token), result.getFirstPosition(tokenIndex));
+                assertEquals(text + " " + token, countWithIndexOf(text.toString(), token), result.getCount(tokenIndex));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyTokenIsNotAllowed() {
+        SlackTokenMatcher.compile(Collections.singletonList(""));
+    }
+
+    private int countWithIndexOf(String text, String token) {
+        int result = 0;
+        int position = text.indexOf(token);
+        while (position >= 0) {
+            result++;
+            position = text.indexOf(token, position + token.length());
+        }
+        return result;
+    }
+}
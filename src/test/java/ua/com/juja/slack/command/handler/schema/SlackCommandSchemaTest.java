@@ -0,0 +1,107 @@
+package ua.com.juja.slack.command.handler.schema;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import ua.com.juja.slack.command.handler.exception.ParseSlackCommandException;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SlackCommandSchemaTest {
+
+    private final UserDTO fromUser = new UserDTO("uuid0", "UFDR97JLA");
+    private final UserDTO user1 = new UserDTO("uuid1", "U1DR97JLA");
+    private final UserDTO user2 = new UserDTO("uuid2", "U2DR97JLA");
+    private final UserDTO user3 = new UserDTO("uuid3", "U3DR97JLA");
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void applySchemaWithRequiredAndOptionalTokens() {
+        //given
+        final SlackCommandSchema schema = SlackCommandSchema.compile(Arrays.asList(
+                TokenRule.required("-from"),
+                TokenRule.required("-to", 2),
+                TokenRule.optional("-cc"),
+                TokenRule.optional("-force", 0)));
+        final String text = "-to <@U2DR97JLA|name2> <@U3DR97JLA|name3> text -force -from <@U1DR97JLA|name1>";
+        final SlackParsedCommand command = new SlackParsedCommand(fromUser, text, Arrays.asList(user2, user3, user1));
+        //when
+        SlackCommandArguments result = schema.apply(command);
+        //then
+        assertEquals(user1, result.getUser("-from"));
+        assertEquals(Arrays.asList(user2, user3), result.getUsers("-to"));
+        assertTrue(result.hasToken("-force"));
+        assertEquals(Collections.emptyList(), result.getUsers("-force"));
+        assertFalse(result.hasToken("-cc"));
+        assertNull(result.getUser("-cc"));
+    }
+
+    @Test
+    public void compiledFromTokensBehavesAsGetUsersWithTokens() {
+        //given
+        final SlackCommandSchema schema = SlackCommandSchema.compile(new HashSet<>(Arrays.asList("-t1", "-t2")));
+        final String text = "text -t2 <@U2DR97JLA|slackName2> -t1text <@U1DR97JLA|slackName1> text";
+        final SlackParsedCommand command = new SlackParsedCommand(fromUser, text, Arrays.asList(user1, user2));
+        //when
+        SlackCommandArguments result = schema.apply(command);
+        //then
+        assertEquals(user1, result.getUser("-t1"));
+        assertEquals(user2, result.getUser("-t2"));
+        assertEquals(command.getUsersWithTokens(new HashSet<>(Arrays.asList("-t1", "-t2"))).size(),
+                result.asMap().size());
+    }
+
+    @Test
+    public void validateWithoutUsers() {
+        //given
+        final SlackCommandSchema schema = SlackCommandSchema.compile(Collections.singletonList(TokenRule.required("-to")));
+        //when
+        Map<String, ?> result = schema.validate("-to <@U2DR97JLA|name2>");
+        //then
+        assertEquals(Collections.singleton("-to"), result.keySet());
+    }
+
+    @Test
+    public void validateRejectsMissingRequiredToken() {
+        //given
+        final SlackCommandSchema schema = SlackCommandSchema.compile(Arrays.asList(
+                TokenRule.optional("-cc"), TokenRule.required("-to")));
+        //then
+        thrown.expect(ParseSlackCommandException.class);
+        thrown.expectMessage(containsString("Token '-to' didn't find in the string '-cc <@U2DR97JLA|name2>'"));
+        //when
+        schema.validate("-cc <@U2DR97JLA|name2>");
+    }
+
+    @Test
+    public void validateRejectsNotEnoughSlackNames() {
+        //given
+        final SlackCommandSchema schema = SlackCommandSchema.compile(Arrays.asList(
+                TokenRule.required("-to", 2), TokenRule.required("-from")));
+        //then
+        thrown.expect(ParseSlackCommandException.class);
+        thrown.expectMessage(containsString("contains 1 slackNames for token '-to', but expected 2"));
+        //when
+        schema.validate("-to <@U2DR97JLA|name2> -from <@U1DR97JLA|name1> <@U3DR97JLA|name3>");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compileRejectsDuplicatedToken() {
+        List<TokenRule> rules = Arrays.asList(TokenRule.required("-to"), TokenRule.optional("-to"));
+        SlackCommandSchema.compile(rules);
+    }
+}
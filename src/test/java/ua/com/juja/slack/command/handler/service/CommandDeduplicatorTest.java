@@ -0,0 +1,127 @@
+package ua.com.juja.slack.command.handler.service;
+
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CommandDeduplicatorTest {
+
+    private static final long REUSE_WINDOW = 100;
+
+    private final AtomicLong now = new AtomicLong();
+    private final CommandDeduplicator deduplicator = new CommandDeduplicator(REUSE_WINDOW, now::get);
+    private final List<CompletableFuture<SlackParsedCommand>> computations = new ArrayList<>();
+    private final Function<String, CompletableFuture<SlackParsedCommand>> create = text -> {
+        CompletableFuture<SlackParsedCommand> result = new CompletableFuture<>();
+        computations.add(result);
+        return result;
+    };
+    private final SlackParsedCommand command = new SlackParsedCommand(new UserDTO("uuid0", "U0"), "text",
+            Collections.emptyList());
+
+    @Test
+    public void identicalInFlightCommandsShareComputation() {
+        //given
+        CompletableFuture<SlackParsedCommand> first = deduplicator.get("U0", "text", create);
+        CompletableFuture<SlackParsedCommand> second = deduplicator.get("U0", "text", create);
+        //when
+        computations.get(0).complete(command);
+        //then
+        assertEquals(1, computations.size());
+        assertSame(command, first.join());
+        assertSame(command, second.join());
+        assertEquals(new DeduplicationStats(1, 1, 1), deduplicator.getStats());
+    }
+
+    @Test
+    public void completedCommandIsReusedInWindow() {
+        //given
+        deduplicator.get("U0", "text", create);
+        computations.get(0).complete(command);
+        now.addAndGet(REUSE_WINDOW - 1);
+        //when
+        CompletableFuture<SlackParsedCommand> reused = deduplicator.get("U0", "text", create);
+        now.addAndGet(1);
+        deduplicator.get("U0", "text", create);
+        //then
+        assertSame(command, reused.join());
+        assertEquals(2, computations.size());
+        assertEquals(new DeduplicationStats(1, 2, 1), deduplicator.getStats());
+    }
+
+    @Test
+    public void differentCommandsAreNotShared() {
+        //when
+        deduplicator.get("U0", "text", create);
+        deduplicator.get("U1", "text", create);
+        deduplicator.get("U0", "text 2", create);
+        //then
+        assertEquals(3, computations.size());
+    }
+
+    @Test
+    public void failedCommandIsNotReused() {
+        //given
+        CompletableFuture<SlackParsedCommand> failed = deduplicator.get("U0", "text", create);
+        computations.get(0).completeExceptionally(new IllegalStateException("user service is down"));
+        //when
+        deduplicator.get("U0", "text", create);
+        //then
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(2, computations.size());
+    }
+
+    @Test
+    public void callerCantCompleteSharedResult() {
+        //given
+        CompletableFuture<SlackParsedCommand> first = deduplicator.get("U0", "text", create);
+        CompletableFuture<SlackParsedCommand> second = deduplicator.get("U0", "text", create);
+        //when
+        first.cancel(true);
+        //then
+        assertFalse(second.isDone());
+    }
+
+    @Test
+    public void commandsOfChangedUserAreNotReused() {
+        //given
+        SlackParsedCommand mentioning = new SlackParsedCommand(new UserDTO("uuid0", "U0"), "hi <@U1|bob>",
+                Collections.singletonList(new UserDTO("uuid1", "U1")));
+        deduplicator.get("U0", "hi <@U1|bob>", create);
+        deduplicator.get("U2", "text", create);
+        computations.get(0).complete(mentioning);
+        computations.get(1).complete(command);
+        //when
+        deduplicator.invalidate(UserChangeEvent.ofUuid("uuid1", 1));
+        deduplicator.get("U0", "hi <@U1|bob>", create);
+        deduplicator.get("U2", "text", create);
+        //then
+        assertEquals(3, computations.size());
+    }
+
+    @Test
+    public void inFlightCommandsAreNotReusedAfterChange() {
+        //given
+        CompletableFuture<SlackParsedCommand> first = deduplicator.get("U0", "text", create);
+        //when
+        deduplicator.invalidate(UserChangeEvent.ofSlackId("U5", 1));
+        deduplicator.get("U0", "text", create);
+        computations.get(0).complete(command);
+        //then
+        assertSame(command, first.join());
+        assertEquals(2, computations.size());
+    }
+}
@@ -0,0 +1,132 @@
+package ua.com.juja.slack.command.handler.service;
+
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.SlackCommandRequest;
+import ua.com.juja.slack.command.handler.model.SlackCommandResult;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlackCommandBatchProcessorTest {
+
+    private final UserDTO userFrom = new UserDTO("AAA000", "UFDR97JLA");
+    private final UserDTO user1 = new UserDTO("AAA111", "U1DR97JLA");
+    private final UserDTO user2 = new UserDTO("AAA222", "U2DR97JLA");
+    private final List<List<String>> userServiceCalls = new ArrayList<>();
+    private final UserBySlackUserId userBySlackUserId = slackIds -> {
+        userServiceCalls.add(new ArrayList<>(slackIds));
+        return Stream.of(userFrom, user1, user2)
+                .filter(user -> slackIds.contains(user.getSlackId()))
+                .collect(Collectors.toList());
+    };
+
+    @Test
+    public void processDeduplicatesSlackIdsOfChunk() {
+        //given
+        final SlackCommandBatchProcessor processor = new SlackCommandBatchProcessor(userBySlackUserId, 10, 100);
+        final List<SlackCommandRequest> requests = Arrays.asList(
+                new SlackCommandRequest("UFDR97JLA", "-to <@U1DR97JLA|slackName1> 1"),
+                new SlackCommandRequest("UFDR97JLA", "-to <@U2DR97JLA|slackName2> 2"),
+                new SlackCommandRequest("U1DR97JLA", "-to <@U2DR97JLA|slackName2> <@UFDR97JLA|from> 3"));
+        //when
+        List<SlackCommandResult> result = processor.process(requests.stream()).collect(Collectors.toList());
+        //then
+        assertEquals(1, userServiceCalls.size());
+        assertEquals(Arrays.asList("U1DR97JLA", "UFDR97JLA", "U2DR97JLA"), userServiceCalls.get(0));
+        assertEquals(3, result.size());
+        assertEquals(SlackCommandResult.success(0, requests.get(0), new SlackParsedCommand(userFrom,
+                requests.get(0).getText(), Collections.singletonList(user1))), result.get(0));
+        assertEquals(new SlackParsedCommand(userFrom, requests.get(1).getText(), Collections.singletonList(user2)),
+                result.get(1).getCommand());
+        assertEquals(new SlackParsedCommand(user1, requests.get(2).getText(), Arrays.asList(user2, userFrom)),
+                result.get(2).getCommand());
+    }
+
+    @Test
+    public void processReportsFailedRequestsAndContinues() {
+        //given
+        final SlackCommandBatchProcessor processor = new SlackCommandBatchProcessor(userBySlackUserId, 2, 100);
+        final List<SlackCommandRequest> requests = Arrays.asList(
+                new SlackCommandRequest("UFDR97JLA", "<@UNKNOWN|unknown>"),
+                new SlackCommandRequest("UFDR97JLA", null),
+                new SlackCommandRequest("UFDR97JLA", "<@U2DR97JLA|slackName2>"));
+        //when
+        Iterator<SlackCommandResult> result = processor.process(requests.iterator());
+        //then
+        SlackCommandResult first = result.next();
+        assertFalse(first.isSuccess());
+        assertEquals("Error. User for slackUserId: [UNKNOWN] didn't find in the user service response",
+                first.getError().getMessage());
+        SlackCommandResult second = result.next();
+        assertEquals(1, second.getIndex());
+        assertTrue(second.getError() instanceof IllegalArgumentException);
+        SlackCommandResult third = result.next();
+        assertEquals(2, third.getIndex());
+        assertTrue(third.isSuccess());
+        assertFalse(result.hasNext());
+        assertEquals(2, userServiceCalls.size());
+    }
+
+    @Test
+    public void processSplitsUserServiceCalls() {
+        //given
+        final SlackCommandBatchProcessor processor = new SlackCommandBatchProcessor(userBySlackUserId, 100, 2);
+        //when
+        long successCount = processor.process(IntStream.range(0, 50)
+                .mapToObj(i -> new SlackCommandRequest("UFDR97JLA", "<@U1DR97JLA|n1> <@U2DR97JLA|n2>")))
+                .filter(SlackCommandResult::isSuccess)
+                .count();
+        //then
+        assertEquals(50, successCount);
+        assertEquals(Arrays.asList(Arrays.asList("U1DR97JLA", "U2DR97JLA"), Collections.singletonList("UFDR97JLA")),
+                userServiceCalls);
+    }
+
+    @Test
+    public void processAllInParallelKeepsOrderOfRequests() {
+        //given
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        final SlackCommandBatchProcessor processor = new SlackCommandBatchProcessor(userBySlackUserId, 64, 100, pool);
+        final List<long[]> chunks = new ArrayList<>();
+        processor.setChunkListener((firstIndex, requestCount, scanNanos, convertNanos) ->
+                chunks.add(new long[]{firstIndex, requestCount}));
+        final List<SlackCommandRequest> requests = IntStream.range(0, 1000)
+                .mapToObj(i -> new SlackCommandRequest("UFDR97JLA", i % 2 == 0
+                        ? "<@U1DR97JLA|n1> " + i : "<@U2DR97JLA|n2> <@U1DR97JLA|n1> " + i))
+                .collect(Collectors.toList());
+        try {
+            //when
+            List<SlackCommandResult> result = processor.processAll(requests);
+            //then
+            assertEquals(1, userServiceCalls.size());
+            assertEquals(1000, result.size());
+            for (int i = 0; i < result.size(); i++) {
+                assertEquals(i, result.get(i).getIndex());
+                assertEquals(requests.get(i).getText(), result.get(i).getCommand().getText());
+                assertEquals(i % 2 == 0 ? Collections.singletonList(user1) : Arrays.asList(user2, user1),
+                        result.get(i).getCommand().getAllUsersInText());
+            }
+            assertEquals(16, chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                assertEquals(i * 64, chunks.get(i)[0]);
+                assertEquals(i == 15 ? 40 : 64, chunks.get(i)[1]);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -8,18 +8,34 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import ua.com.juja.slack.command.handler.AsyncUserBySlackUserId;
 import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.exception.ParseSlackCommandException;
+import ua.com.juja.slack.command.handler.form.SlackCommandForm;
+import ua.com.juja.slack.command.handler.form.SlackFormDecoder;
+import ua.com.juja.slack.command.handler.metrics.InMemorySlackCommandMetrics;
+import ua.com.juja.slack.command.handler.metrics.SlackCommandMetrics;
 import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
 import ua.com.juja.slack.command.handler.model.UserDTO;
+import ua.com.juja.slack.command.handler.schema.SlackCommandSchema;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInAnyOrder;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 /**
@@ -140,6 +156,23 @@ public class SlackCommandHandlerServiceTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void getSlackParsedCommandWithDuplicatedSlackInTextKeepsOrderOfFirstMention() throws Exception {
+        //given
+        final String text = "<@U2DR97JLA|slackName2> <@UFDR97JLA|fromSlackName> <@U1DR97JLA|slackName1> " +
+                "<@U2DR97JLA|slackName2> <@UFDR97JLA|fromSlackName>";
+        final List<UserDTO> responseFromUserService = Arrays.asList(user1, userFrom, user2);
+        final SlackParsedCommand expected = new SlackParsedCommand(userFrom, text, Arrays.asList(user2, userFrom, user1));
+
+        when(userBySlackUserId.findUsersBySlackUserId(anyListOf(String.class))).thenReturn(responseFromUserService);
+        //when
+        SlackParsedCommand actual = slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), text);
+        //then
+        verify(userBySlackUserId).findUsersBySlackUserId(captor.capture());
+        assertThat(captor.getValue(), containsInAnyOrder("U2DR97JLA", "U1DR97JLA", "UFDR97JLA"));
+        assertEquals(expected, actual);
+    }
+
     @Test
     public void shouldThrowExceptionIfReceiveWrongCountOfUsersFromUserService() throws Exception {
         //given
@@ -170,4 +203,233 @@ public class SlackCommandHandlerServiceTest {
         //when
         slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), text);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void createSlackParsedCommandAsync() throws Exception {
+        //given
+        final String text = "text <@U1DR97JLA|slackName1> TexT <@U2DR97JLA|slackName2> text.";
+        final CompletableFuture<List<UserDTO>> responseFromUserService = new CompletableFuture<>();
+        final AsyncUserBySlackUserId asyncUserBySlackUserId = slackNames -> responseFromUserService;
+        final SlackParsedCommand expected = new SlackParsedCommand(userFrom, text, Arrays.asList(user1, user2));
+        slackCommandHandlerService = new SlackCommandHandlerService(asyncUserBySlackUserId, 1, TimeUnit.MINUTES);
+
+        //when
+        CompletableFuture<SlackParsedCommand> actual =
+                slackCommandHandlerService.createSlackParsedCommandAsync(userFrom.getSlackId(), text);
+        //then
+        assertEquals(false, actual.isDone());
+        responseFromUserService.complete(Arrays.asList(user2, userFrom, user1));
+        assertEquals(expected, actual.get());
+    }
+
+    @Test
+    public void createSlackParsedCommandAsyncFailsIfUserServiceIsTooSlow() throws Exception {
+        //given
+        final String text = "text <@U1DR97JLA|slackName1> text.";
+        slackCommandHandlerService = new SlackCommandHandlerService(
+                slackNames -> new CompletableFuture<>(), 10, TimeUnit.MILLISECONDS);
+        //then
+        thrown.expect(ExecutionException.class);
+        thrown.expectCause(instanceOf(TimeoutException.class));
+
+        //when
+        slackCommandHandlerService.createSlackParsedCommandAsync(userFrom.getSlackId(), text).get();
+    }
+
+    @Test
+    public void createSlackParsedCommandWithSchemaDoesNotCallUserServiceForMalformedText() throws Exception {
+        //given
+        final String text = "-from <@U1DR97JLA|slackName1> text";
+        final SlackCommandSchema schema = SlackCommandSchema.compile(new HashSet<>(Arrays.asList("-from", "-to")));
+        //then
+        thrown.expect(ParseSlackCommandException.class);
+        thrown.expectMessage("Token '-to' didn't find in the string '-from <@U1DR97JLA|slackName1> text'");
+
+        //when
+        try {
+            slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), text, schema);
+        } finally {
+            verifyZeroInteractions(userBySlackUserId);
+        }
+    }
+
+    @Test
+    public void metricsAreRecordedForEveryPhase() throws Exception {
+        //given
+        final String text = "text <@U1DR97JLA|slackName1> TexT <@U2DR97JLA|slackName2> text.";
+        final InMemorySlackCommandMetrics metrics = new InMemorySlackCommandMetrics();
+        slackCommandHandlerService.setMetrics(metrics);
+        when(userBySlackUserId.findUsersBySlackUserId(anyListOf(String.class)))
+                .thenReturn(Arrays.asList(userFrom, user1, user2))
+                .thenReturn(Arrays.asList(userFrom, user1));
+
+        //when
+        slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), text);
+        try {
+            slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), text);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //then
+            for (SlackCommandMetrics.Phase phase : Arrays.asList(SlackCommandMetrics.Phase.PARSE,
+                    SlackCommandMetrics.Phase.USER_SERVICE, SlackCommandMetrics.Phase.TOTAL)) {
+                assertEquals(phase.name(), 2, metrics.getPhaseCount(phase));
+            }
+            assertEquals(1, metrics.getPhaseCount(SlackCommandMetrics.Phase.CHECK_RECEIVED_USERS));
+            assertEquals(1, metrics.getPhaseCount(SlackCommandMetrics.Phase.SORT));
+            assertEquals(2, metrics.getMentionCountHistogram()[2]);
+            assertEquals(2, metrics.getUserServiceBatchHistogram()[2]);
+            assertEquals(Collections.singletonMap("UNEXPECTED_USER_COUNT", 1L), metrics.getFailureCounts());
+        }
+    }
+
+    @Test
+    public void tokenFailuresOfCreatedCommandAreRecordedByReason() {
+        //given
+        final String text = "text -to <@U1DR97JLA|slackName1> -to";
+        final InMemorySlackCommandMetrics metrics = new InMemorySlackCommandMetrics();
+        slackCommandHandlerService.setMetrics(metrics);
+        when(userBySlackUserId.findUsersBySlackUserId(anyListOf(String.class)))
+                .thenReturn(Arrays.asList(userFrom, user1));
+        SlackParsedCommand command = slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), text);
+        //when
+        try {
+            command.getUsersWithTokens(new HashSet<>(Arrays.asList("-to")));
+            fail();
+        } catch (ParseSlackCommandException e) {
+            //then
+            assertEquals(Collections.singletonMap("DUPLICATED_TOKEN", 1L), metrics.getFailureCounts());
+        }
+        try {
+            command.getUsersWithTokens(new HashSet<>(Arrays.asList("-from")));
+            fail();
+        } catch (ParseSlackCommandException e) {
+            assertEquals(1L, (long) metrics.getFailureCounts().get("TOKEN_NOT_FOUND"));
+        }
+    }
+
+    @Test
+    public void getSlackParsedCommandFromCharSequence() {
+        //given
+        final StringBuilder text = new StringBuilder("text <@U1DR97JLA|slackName1> -to <@U2DR97JLA|slackName2>");
+        when(userBySlackUserId.findUsersBySlackUserId(anyListOf(String.class)))
+                .thenReturn(Arrays.asList(userFrom, user1, user2));
+        //when
+        SlackParsedCommand actual = slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), text);
+        //then
+        assertEquals(new SlackParsedCommand(userFrom, text.toString(), Arrays.asList(user1, user2)), actual);
+        assertEquals(user2, actual.getUsersWithTokens(new HashSet<>(Collections.singletonList("-to"))).get("-to"));
+        assertEquals("text -to", actual.getTextWithoutSlackNames());
+    }
+
+    @Test
+    public void getSlackParsedCommandFromByteBufferRange() throws Exception {
+        //given
+        final String text = "\u0442\u0435\u043a\u0441\u0442 <@U1DR97JLA|slackName1>";
+        final byte[] body = ("token=x&text=" + text + "&user_id=UFDR97JLA").getBytes("UTF-8");
+        final int offset = "token=x&text=".length();
+        final ByteBuffer buffer = ByteBuffer.wrap(body);
+        when(userBySlackUserId.findUsersBySlackUserId(anyListOf(String.class))).thenReturn(Arrays.asList(userFrom, user1));
+        //when
+        SlackParsedCommand actual = slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(),
+                buffer, offset, text.getBytes("UTF-8").length);
+        //then
+        assertEquals(new SlackParsedCommand(userFrom, text, Collections.singletonList(user1)), actual);
+        assertEquals(0, buffer.position());
+        assertEquals(body.length, buffer.limit());
+    }
+
+    @Test
+    public void getSlackParsedCommandAsyncFromDirectByteBufferRange() throws Exception {
+        //given
+        final String text = "\u0442\u0435\u043a\u0441\u0442 <@U1DR97JLA|slackName1>";
+        final byte[] bytes = text.getBytes("UTF-8");
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 4);
+        buffer.position(2);
+        buffer.put(bytes).clear();
+        when(userBySlackUserId.findUsersBySlackUserId(anyListOf(String.class))).thenReturn(Arrays.asList(userFrom, user1));
+        //when
+        CompletableFuture<SlackParsedCommand> actual = slackCommandHandlerService.createSlackParsedCommandAsync(
+                userFrom.getSlackId(), buffer, 2, bytes.length);
+        buffer.put(2, (byte) 'x');
+        //then
+        assertEquals(new SlackParsedCommand(userFrom, text, Collections.singletonList(user1)),
+                actual.get(1, TimeUnit.SECONDS));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void byteBufferRangeOutOfLimitIsRejected() {
+        slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), ByteBuffer.wrap(new byte[4]), 2, 3);
+    }
+
+    @Test
+    public void stringSignaturesAreKeptForCompiledCallers() throws Exception {
+        assertEquals(SlackParsedCommand.class, SlackCommandHandlerService.class
+                .getMethod("createSlackParsedCommand", String.class, String.class).getReturnType());
+        SlackParsedCommand.class.getConstructor(UserDTO.class, String.class, List.class);
+    }
+
+    @Test
+    public void getSlackParsedCommandWithVirtualThreads() {
+        //given
+        final String text = "text <@U1DR97JLA|slackName1>";
+        when(userBySlackUserId.findUsersBySlackUserId(anyListOf(String.class))).thenReturn(Arrays.asList(userFrom, user1));
+        final SlackCommandHandlerService service =
+                SlackCommandHandlerService.withVirtualThreads(userBySlackUserId, 4, 1, TimeUnit.SECONDS);
+        //when
+        SlackParsedCommand actual = service.createSlackParsedCommand(userFrom.getSlackId(), text);
+        //then
+        assertEquals(new SlackParsedCommand(userFrom, text, Collections.singletonList(user1)), actual);
+    }
+
+    @Test
+    public void identicalCommandsAreDeduplicated() {
+        //given
+        final String text = "text <@U1DR97JLA|slackName1>";
+        when(userBySlackUserId.findUsersBySlackUserId(anyListOf(String.class))).thenReturn(Arrays.asList(userFrom, user1));
+        slackCommandHandlerService.enableDeduplication(1, TimeUnit.MINUTES);
+        //when
+        SlackParsedCommand first = slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), text);
+        SlackParsedCommand second = slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(),
+                new StringBuilder(text));
+        //then
+        verify(userBySlackUserId, times(1)).findUsersBySlackUserId(anyListOf(String.class));
+        assertSame(first, second);
+        assertEquals(1, slackCommandHandlerService.getDeduplicationStats().getHitCount());
+    }
+
+    @Test
+    public void getSlackParsedCommandFromForm() throws Exception {
+        //given
+        final SlackCommandForm form = SlackFormDecoder.decode(
+                "user_id=UFDR97JLA&command=%2Fkudos&text=text+%3C%40U1DR97JLA%7CslackName1%3E".getBytes("UTF-8"));
+        when(userBySlackUserId.findUsersBySlackUserId(anyListOf(String.class))).thenReturn(Arrays.asList(userFrom, user1));
+        //when
+        SlackParsedCommand actual = slackCommandHandlerService.createSlackParsedCommand(form);
+        //then
+        assertEquals(new SlackParsedCommand(userFrom, "text <@U1DR97JLA|slackName1>", Collections.singletonList(user1)),
+                actual);
+        assertSame(form.getMentionIndex(), actual.getMentionIndex());
+    }
+
+    @Test
+    public void deduplicatedCommandWithSchemaDoesNotReferToReusedBuffer() {
+        //given
+        final String text = "-to <@U1DR97JLA|slackName1>";
+        final SlackCommandSchema schema = SlackCommandSchema.compile(Collections.singleton("-to"));
+        when(userBySlackUserId.findUsersBySlackUserId(anyListOf(String.class))).thenReturn(Arrays.asList(userFrom, user1));
+        slackCommandHandlerService.enableDeduplication(1, TimeUnit.MINUTES);
+        final StringBuilder buffer = new StringBuilder(text);
+        //when
+        SlackParsedCommand first = slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), buffer,
+                schema);
+        buffer.setLength(0);
+        buffer.append("garbage of the next request");
+        SlackParsedCommand second = slackCommandHandlerService.createSlackParsedCommand(userFrom.getSlackId(), text,
+                schema);
+        //then
+        assertSame(first, second);
+        assertEquals(text, second.getText());
+        assertEquals(user1, second.getUsersWithTokens(Collections.singleton("-to")).get("-to"));
+    }
+}
@@ -0,0 +1,235 @@
+package ua.com.juja.slack.command.handler.service;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import ua.com.juja.slack.command.handler.AsyncUserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.SlackCommandRequest;
+import ua.com.juja.slack.command.handler.model.SlackCommandResult;
+import ua.com.juja.slack.command.handler.model.SlackParsedCommand;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlackCommandPublisherTest {
+
+    private final UserDTO userFrom = new UserDTO("AAA000", "UFDR97JLA");
+    private final UserDTO user1 = new UserDTO("AAA111", "U1DR97JLA");
+    private final UserDTO user2 = new UserDTO("AAA222", "U2DR97JLA");
+    private final List<List<String>> userServiceCalls = new ArrayList<>();
+    private final List<CompletableFuture<List<UserDTO>>> userServiceAnswers = new ArrayList<>();
+    private boolean answerAtOnce = true;
+    private final AsyncUserBySlackUserId asyncUserBySlackUserId = slackIds -> {
+        userServiceCalls.add(new ArrayList<>(slackIds));
+        CompletableFuture<List<UserDTO>> answer = new CompletableFuture<>();
+        userServiceAnswers.add(answer);
+        if (answerAtOnce) {
+            answer.complete(users(slackIds));
+        }
+        return answer;
+    };
+    private final SlackCommandHandlerService service =
+            new SlackCommandHandlerService(asyncUserBySlackUserId, 0, TimeUnit.SECONDS);
+
+    @Test
+    public void requestsReceivedDuringUserServiceCallAreBatched() {
+        //given
+        answerAtOnce = false;
+        final IterablePublisher requests = new IterablePublisher(Arrays.asList(
+                new SlackCommandRequest("UFDR97JLA", "-to <@U1DR97JLA|slackName1> 0"),
+                new SlackCommandRequest("UFDR97JLA", "-to <@U2DR97JLA|slackName2> 1"),
+                new SlackCommandRequest("U1DR97JLA", "-to <@U2DR97JLA|slackName2> 2")));
+        final RecordingSubscriber<SlackCommandResult> subscriber = new RecordingSubscriber<>();
+        service.process(requests, 10).subscribe(subscriber);
+        //when
+        subscriber.subscription.request(1);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        userServiceAnswers.get(0).complete(Arrays.asList(userFrom, user1));
+        userServiceAnswers.get(1).complete(Arrays.asList(userFrom, user1, user2));
+        //then
+        assertEquals(Arrays.asList(Arrays.asList("U1DR97JLA", "UFDR97JLA"),
+                Arrays.asList("U2DR97JLA", "UFDR97JLA", "U1DR97JLA")), userServiceCalls);
+        assertEquals(Arrays.asList(0L, 1L, 2L), subscriber.values.stream()
+                .map(SlackCommandResult::getIndex).collect(Collectors.toList()));
+        assertEquals(new SlackParsedCommand(user1, "-to <@U2DR97JLA|slackName2> 2",
+                Collections.singletonList(user2)), subscriber.values.get(2).getCommand());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void demandOfSubscriberIsPassedToRequests() {
+        //given
+        final List<SlackCommandRequest> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            items.add(new SlackCommandRequest("UFDR97JLA", "-to <@U1DR97JLA|slackName1> " + i));
+        }
+        final IterablePublisher requests = new IterablePublisher(items);
+        final RecordingSubscriber<SlackCommandResult> subscriber = new RecordingSubscriber<>();
+        service.process(requests, 4).subscribe(subscriber);
+        //when
+        subscriber.subscription.request(3);
+        //then
+        assertEquals(3, subscriber.values.size());
+        assertEquals(3, requests.requested);
+        assertFalse(subscriber.completed);
+        //when
+        subscriber.subscription.request(100);
+        //then
+        assertEquals(10, subscriber.values.size());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void failedUserServiceCallFailsOnlyItsResults() {
+        //given
+        answerAtOnce = false;
+        final IterablePublisher requests = new IterablePublisher(Arrays.asList(
+                new SlackCommandRequest("UFDR97JLA", "-to <@U1DR97JLA|slackName1> 0"),
+                new SlackCommandRequest("UFDR97JLA", "-to <@U2DR97JLA|slackName2> 1")));
+        final RecordingSubscriber<SlackCommandResult> subscriber = new RecordingSubscriber<>();
+        service.process(requests, 10).subscribe(subscriber);
+        //when
+        subscriber.subscription.request(1);
+        userServiceAnswers.get(0).completeExceptionally(new IllegalStateException("user service is down"));
+        subscriber.subscription.request(1);
+        userServiceAnswers.get(1).complete(Arrays.asList(userFrom, user2));
+        //then
+        assertEquals("user service is down", subscriber.values.get(0).getError().getMessage());
+        assertTrue(subscriber.values.get(1).isSuccess());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void cancelStopsRequests() {
+        //given
+        final IterablePublisher requests = new IterablePublisher(Arrays.asList(
+                new SlackCommandRequest("UFDR97JLA", "-to <@U1DR97JLA|slackName1> 0"),
+                new SlackCommandRequest("UFDR97JLA", "-to <@U2DR97JLA|slackName2> 1")));
+        final RecordingSubscriber<SlackCommandResult> subscriber = new RecordingSubscriber<>();
+        service.process(requests, 10).subscribe(subscriber);
+        subscriber.subscription.request(1);
+        //when
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(1);
+        //then
+        assertEquals(1, subscriber.values.size());
+        assertTrue(requests.cancelled);
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void commandPublisherEmitsCommandOnRequest() {
+        //given
+        final RecordingSubscriber<SlackParsedCommand> subscriber = new RecordingSubscriber<>();
+        final Publisher<SlackParsedCommand> publisher =
+                service.createSlackParsedCommandPublisher("UFDR97JLA", "-to <@U1DR97JLA|slackName1>");
+        publisher.subscribe(subscriber);
+        //then
+        assertTrue(userServiceCalls.isEmpty());
+        //when
+        subscriber.subscription.request(1);
+        //then
+        assertEquals(Collections.singletonList(new SlackParsedCommand(userFrom, "-to <@U1DR97JLA|slackName1>",
+                Collections.singletonList(user1))), subscriber.values);
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void commandPublisherSignalsError() {
+        //given
+        final RecordingSubscriber<SlackParsedCommand> subscriber = new RecordingSubscriber<>();
+        service.createSlackParsedCommandPublisher("UFDR97JLA", "-to <@UNKNOWN|slackName1>").subscribe(subscriber);
+        //when
+        subscriber.subscription.request(1);
+        //then
+        assertTrue(subscriber.values.isEmpty());
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    private List<UserDTO> users(List<String> slackIds) {
+        return Stream.of(userFrom, user1, user2)
+                .filter(user -> slackIds.contains(user.getSlackId()))
+                .collect(Collectors.toList());
+    }
+
+    private static final class IterablePublisher implements Publisher<SlackCommandRequest> {
+        private final Iterator<SlackCommandRequest> items;
+        private long requested;
+        private boolean cancelled;
+        private boolean emitting;
+        private long demand;
+
+        private IterablePublisher(List<SlackCommandRequest> items) {
+            this.items = items.iterator();
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super SlackCommandRequest> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    requested += n;
+                    demand += n;
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (demand > 0 && items.hasNext() && !cancelled) {
+                        demand--;
+                        subscriber.onNext(items.next());
+                    }
+                    if (!items.hasNext() && !cancelled) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                    emitting = false;
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static final class RecordingSubscriber<T> implements Subscriber<T> {
+        private final List<T> values = new ArrayList<>();
+        private Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ua.com.juja.slack.command.handler.user;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchingUserBySlackUserIdTest {
+
+    private final List<List<String>> downstreamCalls = new CopyOnWriteArrayList<>();
+    private final UserBySlackUserId userBySlackUserId = slackIds -> {
+        downstreamCalls.add(new ArrayList<>(slackIds));
+        return slackIds.stream()
+                .map(slackId -> new UserDTO("uuid-" + slackId, slackId))
+                .collect(Collectors.toList());
+    };
+    private final List<int[]> batches = new CopyOnWriteArrayList<>();
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneDeduplicatedCall() throws Exception {
+        //given
+        final BatchingUserBySlackUserId batching = new BatchingUserBySlackUserId(userBySlackUserId,
+                500, TimeUnit.MILLISECONDS, 100,
+                (callers, requestedIds, distinctIds) -> batches.add(new int[]{callers, requestedIds, distinctIds}));
+        //when
+        Future<List<UserDTO>> first = executor.submit(() -> batching.findUsersBySlackUserId(Arrays.asList("U1", "U2")));
+        Future<List<UserDTO>> second = executor.submit(() -> batching.findUsersBySlackUserId(Arrays.asList("U2", "U3")));
+        Future<List<UserDTO>> third = executor.submit(() -> batching.findUsersBySlackUserId(Arrays.asList("U1", "UF")));
+        //then
+        assertEquals(Arrays.asList(new UserDTO("uuid-U1", "U1"), new UserDTO("uuid-U2", "U2")), first.get());
+        assertEquals(Arrays.asList(new UserDTO("uuid-U2", "U2"), new UserDTO("uuid-U3", "U3")), second.get());
+        assertEquals(Arrays.asList(new UserDTO("uuid-U1", "U1"), new UserDTO("uuid-UF", "UF")), third.get());
+        assertEquals(1, downstreamCalls.size());
+        assertThat(downstreamCalls.get(0), containsInAnyOrder("U1", "U2", "U3", "UF"));
+        assertEquals(1, batches.size());
+        assertTrue(Arrays.equals(new int[]{3, 6, 4}, batches.get(0)));
+    }
+
+    @Test
+    public void fullBatchIsSentWithoutWaitingForWindow() {
+        //given
+        final BatchingUserBySlackUserId batching = new BatchingUserBySlackUserId(userBySlackUserId,
+                1, TimeUnit.HOURS, 2);
+        //when
+        List<UserDTO> result = batching.findUsersBySlackUserId(Arrays.asList("U1", "U2", "U1"));
+        //then
+        assertEquals(Arrays.asList(new UserDTO("uuid-U1", "U1"), new UserDTO("uuid-U2", "U2")), result);
+        assertEquals(1, downstreamCalls.size());
+    }
+
+    @Test
+    public void emptyRequestDoesNotCallDelegate() {
+        //given
+        final BatchingUserBySlackUserId batching = new BatchingUserBySlackUserId(userBySlackUserId,
+                1, TimeUnit.HOURS, 2);
+        //when
+        List<UserDTO> result = batching.findUsersBySlackUserId(Collections.emptyList());
+        //then
+        assertTrue(result.isEmpty());
+        assertTrue(downstreamCalls.isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void delegateErrorIsPropagatedToCallers() {
+        //given
+        final BatchingUserBySlackUserId batching = new BatchingUserBySlackUserId(slackIds -> {
+            throw new IllegalStateException("user service is down");
+        }, 0, TimeUnit.MILLISECONDS, 10);
+        //when
+        batching.findUsersBySlackUserId(Collections.singletonList("U1"));
+    }
+
+    @Test
+    public void failingListenerDoesNotBlockCallers() throws Exception {
+        //given
+        final BatchingUserBySlackUserId batching = new BatchingUserBySlackUserId(userBySlackUserId,
+                200, TimeUnit.MILLISECONDS, 100, (callers, requestedIds, distinctIds) -> {
+            throw new IllegalStateException("listener failed");
+        });
+        //when
+        Future<List<UserDTO>> first = executor.submit(() -> batching.findUsersBySlackUserId(Arrays.asList("U1")));
+        Future<List<UserDTO>> second = executor.submit(() -> batching.findUsersBySlackUserId(Arrays.asList("U2")));
+        //then
+        assertEquals(Arrays.asList(new UserDTO("uuid-U1", "U1")), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(new UserDTO("uuid-U2", "U2")), second.get(5, TimeUnit.SECONDS));
+    }
+}
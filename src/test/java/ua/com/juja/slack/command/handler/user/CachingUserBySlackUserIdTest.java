@@ -0,0 +1,180 @@
+package ua.com.juja.slack.command.handler.user;
+
+import org.junit.Before;
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class CachingUserBySlackUserIdTest {
+
+    private static final long TTL = 1000;
+    private static final long NEGATIVE_TTL = 100;
+
+    private final List<List<String>> downstreamCalls = new ArrayList<>();
+    private final UserBySlackUserId userBySlackUserId = slackIds -> {
+        downstreamCalls.add(new ArrayList<>(slackIds));
+        return slackIds.stream()
+                .filter(slackId -> !slackId.startsWith("UNKNOWN"))
+                .map(slackId -> new UserDTO("uuid-" + slackId, slackId))
+                .collect(Collectors.toList());
+    };
+    private final AtomicLong now = new AtomicLong();
+    private CachingUserBySlackUserId cache;
+
+    @Before
+    public void setup() {
+        cache = new CachingUserBySlackUserId(userBySlackUserId, 3, TTL, NEGATIVE_TTL, now::get);
+    }
+
+    @Test
+    public void onlyMissesAreSentToDelegate() {
+        //given
+        cache.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        //when
+        List<UserDTO> result = cache.findUsersBySlackUserId(Arrays.asList("U2", "U3", "U1"));
+        //then
+        assertEquals(Arrays.asList(user("U2"), user("U3"), user("U1")), result);
+        assertEquals(Arrays.asList(Arrays.asList("U1", "U2"), Collections.singletonList("U3")), downstreamCalls);
+        assertEquals(new CachingUserBySlackUserId.CacheStats(2, 3, 0, 3), cache.getStats());
+    }
+
+    @Test
+    public void expiredEntriesAreReloaded() {
+        //given
+        cache.findUsersBySlackUserId(Collections.singletonList("U1"));
+        now.addAndGet(TTL);
+        //when
+        cache.findUsersBySlackUserId(Collections.singletonList("U1"));
+        //then
+        assertEquals(2, downstreamCalls.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        //given
+        cache.findUsersBySlackUserId(Arrays.asList("U1", "U2", "U3"));
+        cache.findUsersBySlackUserId(Collections.singletonList("U1"));
+        //when
+        cache.findUsersBySlackUserId(Collections.singletonList("U4"));
+        cache.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        //then
+        assertEquals(Collections.singletonList("U2"), downstreamCalls.get(downstreamCalls.size() - 1));
+        assertEquals(2, cache.getStats().getEvictionCount());
+    }
+
+    @Test
+    public void unknownSlackIdIsCachedForNegativeTtl() {
+        //given
+        cache.findUsersBySlackUserId(Arrays.asList("U1", "UNKNOWN1"));
+        //when
+        List<UserDTO> result = cache.findUsersBySlackUserId(Arrays.asList("U1", "UNKNOWN1"));
+        //then
+        assertEquals(Collections.singletonList(user("U1")), result);
+        assertEquals(1, downstreamCalls.size());
+        //when
+        now.addAndGet(NEGATIVE_TTL);
+        cache.findUsersBySlackUserId(Arrays.asList("U1", "UNKNOWN1"));
+        //then
+        assertEquals(Collections.singletonList("UNKNOWN1"), downstreamCalls.get(1));
+    }
+
+    @Test
+    public void invalidatedEntryIsReloaded() {
+        //given
+        cache.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        //when
+        cache.invalidate("U1");
+        cache.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        //then
+        assertEquals(Collections.singletonList("U1"), downstreamCalls.get(1));
+    }
+
+    private UserDTO user(String slackId) {
+        return new UserDTO("uuid-" + slackId, slackId);
+    }
+
+    @Test
+    public void preloadedUsersAreServedAndRefreshed() {
+        //given
+        cache.preload(Arrays.asList(new UserDTO("old-U1", "U1"), new UserDTO("old-U2", "U2")));
+        //when
+        List<UserDTO> preloaded = cache.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        int refreshed = cache.refreshStale(10);
+        List<UserDTO> result = cache.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        //then
+        assertEquals(Arrays.asList(new UserDTO("old-U1", "U1"), new UserDTO("old-U2", "U2")), preloaded);
+        assertEquals(2, refreshed);
+        assertEquals(Arrays.asList(user("U1"), user("U2")), result);
+        assertEquals(Collections.singletonList(Arrays.asList("U1", "U2")), downstreamCalls);
+        assertEquals(0, cache.refreshStale(10));
+    }
+
+    @Test
+    public void refreshRemovesUsersUnknownToDelegate() {
+        //given
+        cache.preload(Arrays.asList(new UserDTO("old-U1", "U1"), new UserDTO("old", "UNKNOWN1")));
+        //when
+        cache.refreshStale(1);
+        //then
+        assertEquals(Collections.singletonList(user("U1")), cache.getUsers());
+        assertEquals(Arrays.asList(Collections.singletonList("U1"), Collections.singletonList("UNKNOWN1")),
+                downstreamCalls);
+    }
+
+    @Test
+    public void changedUserIsEvictedBySlackIdAndUuid() {
+        //given
+        cache.findUsersBySlackUserId(Arrays.asList("U1", "U2", "U3"));
+        //when
+        cache.onUserChanged(UserChangeEvent.ofSlackId("U1", 1));
+        cache.onUserChanged(UserChangeEvent.ofUuid("uuid-U2", 1));
+        cache.findUsersBySlackUserId(Arrays.asList("U1", "U2", "U3"));
+        //then
+        assertEquals(Arrays.asList("U1", "U2"), downstreamCalls.get(1));
+    }
+
+    @Test
+    public void usersLoadedDuringInvalidationAreNotCached() {
+        //given
+        CachingUserBySlackUserId[] racing = new CachingUserBySlackUserId[1];
+        racing[0] = new CachingUserBySlackUserId(slackIds -> {
+            List<UserDTO> old = userBySlackUserId.findUsersBySlackUserId(slackIds);
+            racing[0].onUserChanged(UserChangeEvent.ofSlackId("U1", 1));
+            return old;
+        }, 3, TTL, NEGATIVE_TTL, now::get);
+        //when
+        List<UserDTO> result = racing[0].findUsersBySlackUserId(Collections.singletonList("U1"));
+        racing[0].findUsersBySlackUserId(Collections.singletonList("U1"));
+        //then
+        assertEquals(Collections.singletonList(user("U1")), result);
+        assertEquals(2, downstreamCalls.size());
+    }
+
+    @Test
+    public void onlyChangedUsersLoadedDuringInvalidationAreNotCached() {
+        //given
+        CachingUserBySlackUserId[] racing = new CachingUserBySlackUserId[1];
+        racing[0] = new CachingUserBySlackUserId(slackIds -> {
+            List<UserDTO> old = userBySlackUserId.findUsersBySlackUserId(slackIds);
+            racing[0].onUserChanged(UserChangeEvent.ofSlackId("U1", 1));
+            racing[0].onUserChanged(UserChangeEvent.ofUuid("uuid-U2", 1));
+            racing[0].onUserChanged(UserChangeEvent.ofSlackId("U9", 1));
+            return old;
+        }, 5, TTL, NEGATIVE_TTL, now::get);
+        //when
+        racing[0].findUsersBySlackUserId(Arrays.asList("U1", "U2", "U3", "UNKNOWN1"));
+        racing[0].findUsersBySlackUserId(Arrays.asList("U1", "U2", "U3", "UNKNOWN1"));
+        //then
+        assertEquals(Arrays.asList("U1", "U2"), downstreamCalls.get(1));
+    }
+}
@@ -0,0 +1,190 @@
+package ua.com.juja.slack.command.handler.user;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.exception.UserServiceUnavailableException;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HttpUserBySlackUserIdTest {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private volatile boolean gzipped;
+    private volatile int status = 200;
+    private volatile long delayMillis;
+    private HttpServer server;
+    private URL url;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/users", this::answer);
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/users");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void findUsersBySlackUserId() {
+        //given
+        HttpUserBySlackUserId userService = new HttpUserBySlackUserId(url, 100, 1000, 1000);
+        //when
+        List<UserDTO> result = userService.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        //then
+        assertEquals(Arrays.asList(new UserDTO("uuid-U1", "U1"), new UserDTO("uuid-U2", "U2")), result);
+        assertEquals(Arrays.asList(Arrays.asList("U1", "U2")), requests);
+    }
+
+    @Test
+    public void longListIsSentInChunks() {
+        //given
+        HttpUserBySlackUserId userService = new HttpUserBySlackUserId(url, 2, 1000, 1000);
+        //when
+        List<UserDTO> result = userService.findUsersBySlackUserId(Arrays.asList("U1", "U2", "U3", "U4", "U5"));
+        //then
+        assertEquals(5, result.size());
+        assertEquals("U5", result.get(4).getSlackId());
+        assertEquals(Arrays.asList(Arrays.asList("U1", "U2"), Arrays.asList("U3", "U4"), Arrays.asList("U5")),
+                requests);
+    }
+
+    @Test
+    public void gzipAnswerIsDecoded() {
+        //given
+        gzipped = true;
+        HttpUserBySlackUserId userService = new HttpUserBySlackUserId(url, 100, 1000, 1000);
+        //when
+        List<UserDTO> result = userService.findUsersBySlackUserId(Arrays.asList("U1"));
+        userService.findUsersBySlackUserId(Arrays.asList("U2"));
+        //then
+        assertEquals(Arrays.asList(new UserDTO("uuid-U1", "U1")), result);
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void connectionIsReused() {
+        //given
+        HttpUserBySlackUserId userService = new HttpUserBySlackUserId(url, 1, 1000, 1000);
+        //when
+        userService.findUsersBySlackUserId(Arrays.asList("U1", "U2", "U3", "U4"));
+        //then
+        assertEquals(4, requests.size());
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void connectionIsReusedAfterErrorStatus() {
+        //given
+        HttpUserBySlackUserId userService = new HttpUserBySlackUserId(url, 100, 1000, 1000);
+        status = 503;
+        //when
+        try {
+            userService.findUsersBySlackUserId(Arrays.asList("U1"));
+            fail();
+        } catch (UserServiceUnavailableException e) {
+            //then
+            assertEquals(true, e.getMessage().contains("[503]"));
+        }
+        status = 200;
+        assertEquals(1, userService.findUsersBySlackUserId(Arrays.asList("U2")).size());
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test(expected = UserServiceUnavailableException.class)
+    public void slowAnswerTimesOut() {
+        //given
+        delayMillis = 500;
+        HttpUserBySlackUserId userService = new HttpUserBySlackUserId(url, 100, 1000, 50);
+        //when
+        userService.findUsersBySlackUserId(Arrays.asList("U1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongSettings() {
+        new HttpUserBySlackUserId(url, 0, 1000, 1000);
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        List<String> slackIds = readSlackIds(exchange);
+        requests.add(slackIds);
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = status == 200 ? writeUsers(slackIds) : "unavailable".getBytes("UTF-8");
+        if (gzipped) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private List<String> readSlackIds(HttpExchange exchange) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (JsonParser parser = jsonFactory.createParser(exchange.getRequestBody())) {
+            while (parser.nextToken() != null) {
+                if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+                    result.add(parser.getText());
+                }
+            }
+        }
+        return result;
+    }
+
+    private byte[] writeUsers(List<String> slackIds) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartArray();
+            for (String slackId : slackIds) {
+                generator.writeStartObject();
+                generator.writeStringField("uuid", "uuid-" + slackId);
+                generator.writeStringField("slackId", slackId);
+                generator.writeStringField("name", "ignored");
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+}
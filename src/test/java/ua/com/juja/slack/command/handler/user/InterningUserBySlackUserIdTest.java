@@ -0,0 +1,74 @@
+package ua.com.juja.slack.command.handler.user;
+
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class InterningUserBySlackUserIdTest {
+
+    private final AtomicReference<String> uuidPrefix = new AtomicReference<>("uuid-");
+    private final UserBySlackUserId userBySlackUserId = slackIds -> slackIds.stream()
+            .map(slackId -> new UserDTO(uuidPrefix.get() + slackId, slackId))
+            .collect(Collectors.toList());
+
+    @Test
+    public void equalUsersShareOneInstance() {
+        //given
+        InterningUserBySlackUserId interning = new InterningUserBySlackUserId(userBySlackUserId, 10);
+        List<UserDTO> first = interning.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        //when
+        List<UserDTO> result = interning.findUsersBySlackUserId(Arrays.asList("U2", "U3"));
+        //then
+        assertSame(first.get(1), result.get(0));
+        assertEquals(new UserDTO("uuid-U3", "U3"), result.get(1));
+        assertEquals(3, interning.size());
+    }
+
+    @Test
+    public void changedUserReplacesInternedInstance() {
+        //given
+        InterningUserBySlackUserId interning = new InterningUserBySlackUserId(userBySlackUserId, 10);
+        UserDTO old = interning.findUsersBySlackUserId(Collections.singletonList("U1")).get(0);
+        uuidPrefix.set("new-");
+        //when
+        UserDTO result = interning.findUsersBySlackUserId(Collections.singletonList("U1")).get(0);
+        //then
+        assertNotSame(old, result);
+        assertEquals(new UserDTO("new-U1", "U1"), result);
+        assertSame(result, interning.intern(new UserDTO("new-U1", "U1")));
+    }
+
+    @Test
+    public void tableIsClearedWhenFull() {
+        //given
+        InterningUserBySlackUserId interning = new InterningUserBySlackUserId(userBySlackUserId, 2);
+        interning.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        //when
+        interning.findUsersBySlackUserId(Collections.singletonList("U3"));
+        //then
+        assertEquals(1, interning.size());
+    }
+
+    @Test
+    public void changedUserIsDropped() {
+        //given
+        InterningUserBySlackUserId interning = new InterningUserBySlackUserId(userBySlackUserId, 10);
+        interning.findUsersBySlackUserId(Arrays.asList("U1", "U2", "U3"));
+        //when
+        interning.onUserChanged(UserChangeEvent.ofSlackId("U1", 1));
+        interning.onUserChanged(UserChangeEvent.ofUuid("uuid-U2", 1));
+        //then
+        assertEquals(1, interning.size());
+    }
+}
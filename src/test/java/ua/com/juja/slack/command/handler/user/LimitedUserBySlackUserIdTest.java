@@ -0,0 +1,51 @@
+package ua.com.juja.slack.command.handler.user;
+
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LimitedUserBySlackUserIdTest {
+
+    @Test
+    public void concurrentCallsAreLimited() throws Exception {
+        //given
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final UserBySlackUserId slowUserService = slackIds -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return Collections.singletonList(new UserDTO("uuid-" + slackIds.get(0), slackIds.get(0)));
+        };
+        final LimitedUserBySlackUserId limited = new LimitedUserBySlackUserId(slowUserService, 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        //when
+        List<Future<List<UserDTO>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final String slackId = "U" + i;
+            results.add(executor.submit(() -> limited.findUsersBySlackUserId(Collections.singletonList(slackId))));
+        }
+        //then
+        for (int i = 0; i < 8; i++) {
+            assertEquals("U" + i, results.get(i).get(5, TimeUnit.SECONDS).get(0).getSlackId());
+        }
+        assertTrue(maxInFlight.get() <= 2);
+        executor.shutdown();
+    }
+}
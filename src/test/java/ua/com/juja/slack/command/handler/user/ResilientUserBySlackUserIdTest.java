@@ -0,0 +1,293 @@
+package ua.com.juja.slack.command.handler.user;
+
+import org.junit.After;
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.UserBySlackUserId;
+import ua.com.juja.slack.command.handler.exception.UserServiceUnavailableException;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+import ua.com.juja.slack.command.handler.user.ResilientUserBySlackUserId.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResilientUserBySlackUserIdTest {
+
+    private static final long OPEN_DURATION = 1000;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicLong now = new AtomicLong();
+    private final FakeUserService userService = new FakeUserService();
+    private final List<String> transitions = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        userService.release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void slowCallTimesOut() {
+        //given
+        ResilientUserBySlackUserId resilient = resilient(TimeUnit.MILLISECONDS.toNanos(50), 0);
+        userService.latencyMillis = 10_000;
+        //when
+        UserServiceUnavailableException error = callAndFail(resilient, "U1");
+        //then
+        assertTrue(error.getMessage().startsWith("The user service didn't answer in 50 ms"));
+    }
+
+    @Test
+    public void breakerOpensAfterConsecutiveFailuresAndRejectsCalls() {
+        //given
+        ResilientUserBySlackUserId resilient = resilient(0, 0);
+        userService.failing = true;
+        callAndFail(resilient, "U1");
+        callAndFail(resilient, "U1");
+        //when
+        UserServiceUnavailableException error = callAndFail(resilient, "U1");
+        //then
+        assertEquals("Circuit breaker is OPEN, the user service isn't called", error.getMessage());
+        assertEquals(2, userService.calls.get());
+        assertEquals(Collections.singletonList("CLOSED->OPEN"), transitions);
+    }
+
+    @Test
+    public void successfulProbeClosesBreaker() {
+        //given
+        ResilientUserBySlackUserId resilient = resilient(0, 0);
+        userService.failing = true;
+        callAndFail(resilient, "U1");
+        callAndFail(resilient, "U1");
+        now.addAndGet(OPEN_DURATION);
+        userService.failing = false;
+        //when
+        List<UserDTO> result = resilient.findUsersBySlackUserId(Collections.singletonList("U1"));
+        //then
+        assertEquals(Collections.singletonList(user("U1")), result);
+        assertEquals(State.CLOSED, resilient.getState());
+        assertEquals(Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+    }
+
+    @Test
+    public void failedProbeOpensBreakerAgain() {
+        //given
+        ResilientUserBySlackUserId resilient = resilient(0, 0);
+        userService.failing = true;
+        callAndFail(resilient, "U1");
+        callAndFail(resilient, "U1");
+        now.addAndGet(OPEN_DURATION);
+        //when
+        callAndFail(resilient, "U1");
+        //then
+        assertEquals(State.OPEN, resilient.getState());
+        assertEquals(3, userService.calls.get());
+        assertEquals(Arrays.asList("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN"), transitions);
+    }
+
+    @Test
+    public void staleUsersAreServedWhileBreakerIsOpen() {
+        //given
+        ResilientUserBySlackUserId resilient = resilient(0, 10);
+        resilient.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        userService.failing = true;
+        //when
+        List<UserDTO> failed = resilient.findUsersBySlackUserId(Collections.singletonList("U2"));
+        resilient.findUsersBySlackUserId(Collections.singletonList("U1"));
+        List<UserDTO> open = resilient.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        //then
+        assertEquals(Collections.singletonList(user("U2")), failed);
+        assertEquals(Arrays.asList(user("U1"), user("U2")), open);
+        assertEquals(State.OPEN, resilient.getState());
+        assertEquals(3, userService.calls.get());
+        callAndFail(resilient, "U3");
+    }
+
+    @Test
+    public void bulkheadRejectsCallsOverTheLimit() throws Exception {
+        //given
+        ResilientUserBySlackUserId resilient = resilient(0, 0);
+        userService.blocking = true;
+        Future<List<UserDTO>> blocked = executor.submit(
+                () -> resilient.findUsersBySlackUserId(Collections.singletonList("U1")));
+        userService.entered.await(5, TimeUnit.SECONDS);
+        //when
+        UserServiceUnavailableException error = callAndFail(resilient, "U2");
+        //then
+        assertEquals("Bulkhead is full, more than 1 concurrent calls of the user service", error.getMessage());
+        userService.release.countDown();
+        assertEquals(Collections.singletonList(user("U1")), blocked.get(5, TimeUnit.SECONDS));
+        assertEquals(State.CLOSED, resilient.getState());
+    }
+
+    @Test
+    public void changedUserIsNotServedStale() {
+        //given
+        ResilientUserBySlackUserId resilient = resilient(0, 10);
+        resilient.findUsersBySlackUserId(Arrays.asList("U1", "U2"));
+        userService.failing = true;
+        //when
+        resilient.onUserChanged(UserChangeEvent.ofUuid("uuid-U1", 1));
+        //then
+        assertEquals(Collections.singletonList(user("U2")),
+                resilient.findUsersBySlackUserId(Collections.singletonList("U2")));
+        callAndFail(resilient, "U1");
+    }
+
+    @Test
+    public void onlyUserChangedDuringCallIsNotRemembered() throws Exception {
+        //given
+        ResilientUserBySlackUserId resilient = resilient(0, 10);
+        userService.blocking = true;
+        Future<List<UserDTO>> call = executor.submit(
+                () -> resilient.findUsersBySlackUserId(Arrays.asList("U1", "U2")));
+        userService.entered.await(5, TimeUnit.SECONDS);
+        //when
+        resilient.onUserChanged(UserChangeEvent.ofSlackId("U1", 1));
+        userService.release.countDown();
+        call.get(5, TimeUnit.SECONDS);
+        userService.failing = true;
+        //then
+        assertEquals(Collections.singletonList(user("U2")),
+                resilient.findUsersBySlackUserId(Collections.singletonList("U2")));
+        callAndFail(resilient, "U1");
+    }
+
+    @Test
+    public void timedOutCallHoldsBulkheadPermitUntilDelegateReturns() throws Exception {
+        //given
+        ResilientUserBySlackUserId resilient = resilient(TimeUnit.MILLISECONDS.toNanos(50), 0);
+        userService.blocking = true;
+        userService.uninterruptible = true;
+        callAndFail(resilient, "U1");
+        //when
+        UserServiceUnavailableException error = callAndFail(resilient, "U2");
+        //then
+        assertEquals("Bulkhead is full, more than 1 concurrent calls of the user service", error.getMessage());
+        userService.release.countDown();
+        userService.returned.await(5, TimeUnit.SECONDS);
+        // the permit is released right after the delegate returns
+        List<UserDTO> result = null;
+        for (int attempt = 0; result == null && attempt < 100; attempt++) {
+            try {
+                result = resilient.findUsersBySlackUserId(Collections.singletonList("U3"));
+            } catch (UserServiceUnavailableException e) {
+                Thread.sleep(10);
+            }
+        }
+        assertEquals(Collections.singletonList(user("U3")), result);
+    }
+
+    @Test
+    public void probeFailedWithErrorLetsNextProbeThrough() {
+        //given
+        ResilientUserBySlackUserId resilient = resilient(0, 0);
+        userService.failing = true;
+        callAndFail(resilient, "U1");
+        callAndFail(resilient, "U1");
+        now.addAndGet(OPEN_DURATION);
+        userService.error = new AssertionError("delegate error");
+        try {
+            resilient.findUsersBySlackUserId(Collections.singletonList("U1"));
+            fail("AssertionError expected");
+        } catch (AssertionError e) {
+            assertEquals("delegate error", e.getMessage());
+        }
+        userService.error = null;
+        userService.failing = false;
+        now.addAndGet(OPEN_DURATION);
+        //when
+        List<UserDTO> result = resilient.findUsersBySlackUserId(Collections.singletonList("U1"));
+        //then
+        assertEquals(Collections.singletonList(user("U1")), result);
+        assertEquals(State.CLOSED, resilient.getState());
+    }
+
+    private ResilientUserBySlackUserId resilient(long timeoutNanos, int staleCacheSize) {
+        ResilientUserBySlackUserId result = new ResilientUserBySlackUserId(userService, executor, timeoutNanos, 1, 2,
+                OPEN_DURATION, staleCacheSize, now::get);
+        result.setStateListener((from, to) -> transitions.add(from + "->" + to));
+        return result;
+    }
+
+    private static UserServiceUnavailableException callAndFail(ResilientUserBySlackUserId resilient,
+                                                               String slackId) {
+        try {
+            resilient.findUsersBySlackUserId(Collections.singletonList(slackId));
+            fail("UserServiceUnavailableException expected");
+            return null;
+        } catch (UserServiceUnavailableException e) {
+            return e;
+        }
+    }
+
+    private static UserDTO user(String slackId) {
+        return new UserDTO("uuid-" + slackId, slackId);
+    }
+
+    private static final class FakeUserService implements UserBySlackUserId {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch returned = new CountDownLatch(1);
+        private volatile long latencyMillis;
+        private volatile boolean failing;
+        private volatile boolean blocking;
+        private volatile boolean uninterruptible;
+        private volatile Error error;
+
+        @Override
+        public List<UserDTO> findUsersBySlackUserId(List<String> slackNames) {
+            calls.incrementAndGet();
+            entered.countDown();
+            try {
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis);
+                }
+                if (blocking) {
+                    awaitRelease();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted");
+            } finally {
+                returned.countDown();
+            }
+            if (error != null) {
+                throw error;
+            }
+            if (failing) {
+                throw new IllegalStateException("user service is down");
+            }
+            return slackNames.stream().map(ResilientUserBySlackUserIdTest::user).collect(Collectors.toList());
+        }
+
+        private void awaitRelease() throws InterruptedException {
+            while (true) {
+                try {
+                    release.await();
+                    return;
+                } catch (InterruptedException e) {
+                    if (!uninterruptible) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package ua.com.juja.slack.command.handler.user;
+
+import org.junit.Before;
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UserInvalidationFeedTest {
+
+    private final List<UserChangeEvent> first = new ArrayList<>();
+    private final List<UserChangeEvent> second = new ArrayList<>();
+    private final UserInvalidationFeed feed = new UserInvalidationFeed(2);
+
+    @Before
+    public void setup() {
+        feed.addListener(first::add);
+        feed.addListener(second::add);
+    }
+
+    @Test
+    public void eventIsPassedToAllListeners() {
+        //given
+        UserChangeEvent event = UserChangeEvent.ofSlackId("U1", 1);
+        //when
+        boolean applied = feed.publish(event);
+        //then
+        assertTrue(applied);
+        assertEquals(Arrays.asList(event), first);
+        assertEquals(Arrays.asList(event), second);
+    }
+
+    @Test
+    public void redeliveredAndLateEventsAreDropped() {
+        //given
+        feed.publish(UserChangeEvent.ofSlackId("U1", 2));
+        //when
+        boolean redelivered = feed.publish(UserChangeEvent.ofSlackId("U1", 2));
+        boolean late = feed.publish(UserChangeEvent.ofSlackId("U1", 1));
+        boolean newer = feed.publish(UserChangeEvent.ofSlackId("U1", 3));
+        //then
+        assertFalse(redelivered);
+        assertFalse(late);
+        assertTrue(newer);
+        assertEquals(2, feed.getAppliedCount());
+        assertEquals(2, feed.getDroppedCount());
+    }
+
+    @Test
+    public void versionsAreTrackedBySlackIdAndUuid() {
+        //given
+        feed.publish(new UserChangeEvent("U1", "uuid1", 5));
+        //when
+        boolean lateByUuid = feed.publish(UserChangeEvent.ofUuid("uuid1", 4));
+        boolean relinked = feed.publish(new UserChangeEvent("U2", "uuid1", 4));
+        //then
+        assertFalse(lateByUuid);
+        assertTrue(relinked);
+    }
+
+    @Test
+    public void eventsWithoutVersionAndOfForgottenKeysAreApplied() {
+        //given
+        feed.publish(UserChangeEvent.ofSlackId("U1", 2));
+        feed.publish(UserChangeEvent.ofSlackId("U2", 1));
+        feed.publish(UserChangeEvent.ofSlackId("U3", 1));
+        //when
+        boolean forgotten = feed.publish(UserChangeEvent.ofSlackId("U1", 1));
+        boolean withoutVersion = feed.publish(UserChangeEvent.ofSlackId("U3", UserChangeEvent.NO_VERSION));
+        //then
+        assertTrue(forgotten);
+        assertTrue(withoutVersion);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void eventWithoutKeysIsRejected() {
+        feed.publish(new UserChangeEvent(null, null, 1));
+    }
+}
@@ -0,0 +1,51 @@
+package ua.com.juja.slack.command.handler.user;
+
+import org.junit.Test;
+import ua.com.juja.slack.command.handler.model.UserChangeEvent;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import static org.junit.Assert.assertEquals;
+
+public class UserInvalidationsTest {
+
+    private final UserInvalidations invalidations = new UserInvalidations(2);
+
+    @Test
+    public void onlyUsersChangedAfterStartAreChanged() {
+        //given
+        invalidations.invalidateSlackId("U1");
+        long startedAt = invalidations.start();
+        //when
+        invalidations.invalidate(UserChangeEvent.ofUuid("uuid-U2", 1));
+        //then
+        assertEquals(false, invalidations.isChangedSince(startedAt, new UserDTO("uuid-U1", "U1")));
+        assertEquals(true, invalidations.isChangedSince(startedAt, new UserDTO("uuid-U2", "U2")));
+        assertEquals(false, invalidations.isChangedSince(startedAt, "U2", null));
+    }
+
+    @Test
+    public void droppedInvalidationChangesEveryUserOfEarlierCalls() {
+        //given
+        long startedAt = invalidations.start();
+        invalidations.invalidateSlackId("U1");
+        long startedLater = invalidations.start();
+        //when
+        invalidations.invalidateSlackId("U2");
+        invalidations.invalidateSlackId("U3");
+        //then
+        assertEquals(true, invalidations.isChangedSince(startedAt, "U1", null));
+        assertEquals(true, invalidations.isChangedSince(startedAt, "U4", null));
+        assertEquals(false, invalidations.isChangedSince(startedLater, "U4", null));
+    }
+
+    @Test
+    public void invalidateAllChangesEveryUser() {
+        //given
+        long startedAt = invalidations.start();
+        //when
+        invalidations.invalidateAll();
+        //then
+        assertEquals(true, invalidations.isChangedSince(startedAt, "U1", null));
+        assertEquals(false, invalidations.isChangedSince(invalidations.start(), "U1", null));
+    }
+}
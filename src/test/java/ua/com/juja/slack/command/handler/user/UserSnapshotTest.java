@@ -0,0 +1,89 @@
+package ua.com.juja.slack.command.handler.user;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ua.com.juja.slack.command.handler.model.UserDTO;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UserSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndRead() throws IOException {
+        //given
+        Path file = folder.getRoot().toPath().resolve("users.snapshot");
+        List<UserDTO> users = Arrays.asList(new UserDTO("uuid1", "U1"), new UserDTO(null, "U2"),
+                new UserDTO("uuid3", null), new UserDTO("\u044e\u0437\u0435\u0440", "U4"));
+        //when
+        UserSnapshot.write(file, users);
+        UserSnapshot result = UserSnapshot.read(file);
+        //then
+        assertEquals(Arrays.asList(new UserDTO("uuid1", "U1"), new UserDTO(null, "U2"),
+                new UserDTO("\u044e\u0437\u0435\u0440", "U4")), result.getUsers());
+        assertTrue(result.getCreatedAtMillis() > 0);
+        assertTrue(Files.notExists(file.resolveSibling("users.snapshot.tmp")));
+    }
+
+    @Test
+    public void readManyUsers() throws IOException {
+        //given
+        Path file = folder.getRoot().toPath().resolve("users.snapshot");
+        List<UserDTO> users = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            users.add(new UserDTO("uuid-" + i, "U" + i));
+        }
+        UserSnapshot.write(file, users);
+        //when
+        UserSnapshot result = UserSnapshot.read(file);
+        //then
+        assertEquals(users, result.getUsers());
+    }
+
+    @Test
+    public void damagedSnapshotIsRejected() throws IOException {
+        //given
+        Path file = folder.getRoot().toPath().resolve("users.snapshot");
+        UserSnapshot.write(file, Arrays.asList(new UserDTO("uuid1", "U1"), new UserDTO("uuid2", "U2")));
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(30);
+            raw.write('X');
+        }
+        //when
+        try {
+            UserSnapshot.read(file);
+            fail("IOException expected");
+        } catch (IOException e) {
+            //then
+            assertTrue(e.getMessage().startsWith("Checksum mismatch"));
+        }
+    }
+
+    @Test
+    public void otherFileIsRejected() throws IOException {
+        //given
+        Path file = folder.getRoot().toPath().resolve("users.json");
+        Files.write(file, "[{\"uuid\":\"uuid1\",\"slackId\":\"U1\"}]".getBytes("UTF-8"));
+        //when
+        try {
+            UserSnapshot.read(file);
+            fail("IOException expected");
+        } catch (IOException e) {
+            //then
+            assertTrue(e.getMessage().endsWith("isn't a users snapshot"));
+        }
+    }
+}
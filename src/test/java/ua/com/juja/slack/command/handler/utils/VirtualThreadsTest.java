@@ -0,0 +1,26 @@
+package ua.com.juja.slack.command.handler.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void virtualThreadsAreUsedSinceJava21() throws Exception {
+        //given
+        final String version = System.getProperty("java.specification.version");
+        final boolean java21 = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+        final ExecutorService executor = VirtualThreads.newExecutor(2, "test-");
+        //when
+        String threadName = executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+        //then
+        assertEquals(java21, VirtualThreads.isSupported());
+        assertTrue(java21 ? threadName.isEmpty() : threadName.startsWith("test-"));
+        executor.shutdown();
+    }
+}